@@ -0,0 +1,215 @@
+import java.awt.Dimension;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * BatchProcessor applies a chain of filters to many image files, without
+ * a GUI. It is started from the command line:
+ *
+ *   java BatchProcessor [-threads n] [-io n] [-memory mb] [-format name]
+ *                       [-quality 0-100] [-compression 0-9] input filters output
+ *
+ * The input is a folder, or a glob pattern such as photos/*.jpg or
+ * photos/**.png. The filters are the names of filters, as in the image
+ * viewer, separated by commas (for example "Smooth, Grayscale"). The
+ * results are written to the output folder, under the names of the input
+ * files; a file whose result would have the same name as that of an earlier
+ * file (from another folder, or with another extension) is reported as
+ * failed. They are written in the format of the input, or the one given
+ * with -format, at the JPEG quality and PNG compression level given.
+ *
+ * Files go through an ImagePipeline, so that files are read and written
+ * while others are filtered. The options set the number of threads that
+ * filter (by default one per processor), the number that read and that
+ * write files (by default two each), and the memory the images in the
+ * pipeline may use together (by default half the heap).
+ *
+ * The time taken by each file is printed as it finishes, and the overall
+ * rate and the use of each stage of the pipeline at the end.
+ *
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+public class BatchProcessor implements ImagePipeline.Listener
+{
+    private static final String USAGE =
+        "Usage: java BatchProcessor [-threads n] [-io n] [-memory mb] [-format name] "
+        + "[-quality 0-100] [-compression 0-9] input filters output";
+    // the number of images that may wait between two stages
+    private static final int QUEUE_LENGTH = 4;
+
+    private final ImagePipeline pipeline;
+    private final AtomicInteger failed;
+
+    /**
+     * Create a batch processor.
+     * @param filter The filter to apply to each file.
+     * @param outputFolder The folder to write the results to.
+     * @param encoding How to write the results.
+     * @param ioThreads The number of threads that load files, and also the
+     *                  number that save files.
+     * @param filterThreads The number of threads that filter images.
+     * @param memoryLimit The number of bytes the images being processed
+     *                    may use together.
+     */
+    public BatchProcessor(Filter filter, File outputFolder, ImageEncoding encoding,
+                          int ioThreads, int filterThreads, long memoryLimit)
+    {
+        pipeline = new ImagePipeline(filter, outputFolder, encoding, ioThreads, filterThreads,
+                                     QUEUE_LENGTH, memoryLimit, this);
+        failed = new AtomicInteger();
+    }
+
+    /**
+     * Process files, and print the time each takes, the overall rate, and
+     * how busy each stage of the pipeline was.
+     * @param files The image files to process.
+     * @return The number of files that could not be processed.
+     * @throws InterruptedException if interrupted while waiting for the
+     *         files to be done.
+     */
+    public int process(List<File> files) throws InterruptedException
+    {
+        pipeline.process(files);
+        double seconds = pipeline.getElapsedNanos() / 1e9;
+        int done = files.size() - failed.get();
+        System.out.printf("%d images in %.2f s: %.2f images/second, %d failed%n",
+                          done, seconds, done / seconds, failed.get());
+        System.out.print(pipeline.getStatistics());
+        return failed.get();
+    }
+
+    /**
+     * Print the time a file took.
+     */
+    public void fileDone(File file, Dimension size, long[] nanos)
+    {
+        System.out.printf("%s: %dx%d, load %.1f ms, filter %.1f ms, save %.1f ms%n",
+                          file.getName(), size.width, size.height,
+                          nanos[0] / 1e6, nanos[1] / 1e6, nanos[2] / 1e6);
+    }
+
+    /**
+     * Report a file that could not be processed.
+     */
+    public void fileFailed(File file, String reason)
+    {
+        failed.incrementAndGet();
+        System.err.println(file.getName() + ": " + reason);
+    }
+
+    /**
+     * Return the image files named by an input argument: all image files in
+     * a folder, or the files that match a glob pattern. A pattern is matched
+     * against the path below the folder that comes before its first wildcard,
+     * so photos/*.jpg finds the JPEG files in photos, and photos/**.jpg also
+     * those in the folders below it.
+     * @param input A folder or a glob pattern.
+     * @return The files, sorted by path.
+     * @throws IOException if a folder could not be read.
+     */
+    public static List<File> findFiles(String input) throws IOException
+    {
+        File folder = new File(input);
+        if(folder.isDirectory()) {
+            return ImageFileManager.listImageFiles(folder);
+        }
+        int wildcard = indexOfWildcard(input);
+        int end = wildcard < 0 ? input.length() : wildcard;
+        int separator = Math.max(input.lastIndexOf('/', end),
+                                 input.lastIndexOf(File.separatorChar, end));
+        Path base = Paths.get(separator < 0 ? "." : input.substring(0, separator + 1));
+        PathMatcher matcher = FileSystems.getDefault()
+                                         .getPathMatcher("glob:" + input.substring(separator + 1));
+        List<File> files;
+        try(Stream<Path> paths = Files.walk(base)) {
+            files = paths.filter(path -> Files.isRegularFile(path)
+                                         && matcher.matches(base.relativize(path)))
+                         .map(Path::toFile)
+                         .collect(Collectors.toCollection(ArrayList::new));
+        }
+        Collections.sort(files);
+        return files;
+    }
+
+    /**
+     * Return the index of the first glob wildcard in a pattern, or -1.
+     */
+    private static int indexOfWildcard(String pattern)
+    {
+        for(int i = 0; i < pattern.length(); i++) {
+            if("*?[{".indexOf(pattern.charAt(i)) >= 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Run a batch from the command line.
+     * @param args The options, input, filters and output folder.
+     */
+    public static void main(String[] args) throws InterruptedException
+    {
+        System.setProperty("java.awt.headless", "true");
+        int threads = Runtime.getRuntime().availableProcessors();
+        int ioThreads = 2;
+        ImageEncoding encoding = ImageEncoding.DEFAULT;
+        long memoryLimit = Runtime.getRuntime().maxMemory() / 2;
+        int next = 0;
+        try {
+            while(next < args.length && args[next].startsWith("-")) {
+                if(args[next].equals("-threads") && next + 1 < args.length) {
+                    threads = Integer.parseInt(args[next + 1]);
+                }
+                else if(args[next].equals("-io") && next + 1 < args.length) {
+                    ioThreads = Integer.parseInt(args[next + 1]);
+                }
+                else if(args[next].equals("-format") && next + 1 < args.length) {
+                    encoding = encoding.withFormat(args[next + 1]);
+                }
+                else if(args[next].equals("-quality") && next + 1 < args.length) {
+                    encoding = encoding.withJpegQuality(Integer.parseInt(args[next + 1]) / 100f);
+                }
+                else if(args[next].equals("-compression") && next + 1 < args.length) {
+                    encoding = encoding.withPngCompression(Integer.parseInt(args[next + 1]));
+                }
+                else if(args[next].equals("-memory") && next + 1 < args.length) {
+                    memoryLimit = Long.parseLong(args[next + 1]) * 1024 * 1024;
+                }
+                else {
+                    throw new IllegalArgumentException("Unknown option: " + args[next]);
+                }
+                next += 2;
+            }
+            if(args.length - next != 3) {
+                throw new IllegalArgumentException("Expected input, filters and output.");
+            }
+            List<File> files = findFiles(args[next]);
+            Filter filter = FilterChain.fromNames(args[next + 1], FilterChain.createFilters());
+            BatchProcessor batch = new BatchProcessor(filter, new File(args[next + 2]), encoding,
+                                                      ioThreads, threads, memoryLimit);
+            System.exit(batch.process(files) == 0 ? 0 : 1);
+        }
+        catch(IllegalArgumentException exc) {
+            System.err.println(exc.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        catch(IOException exc) {
+            System.err.println("The input could not be read: " + exc);
+            System.exit(2);
+        }
+    }
+}
@@ -0,0 +1,391 @@
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Benchmark measures how long the image operations take: every filter
+ * known by name, making the image larger and smaller, rotating it right
+ * and left, resampling it with each Resampler kernel (next to Graphics2D
+ * scaling with the same targets, for comparison), and loading and saving
+ * it as JPEG and PNG. Each is measured on
+ * synthetic images of several sizes and kinds of content, which are the
+ * same in every run, and the results can be written to a JSON file, so
+ * that runs can be compared to find slowdowns.
+ *
+ * It is started from the command line:
+ *
+ *   java Benchmark [-sizes 640x480,1920x1080] [-content PHOTO,NOISE]
+ *                  [-only name,name] [-warmup n] [-iterations n] [-json file]
+ *
+ * Each case is first run a number of times without being measured, so the
+ * JIT compiler has done its work, and then measured a number of times on a
+ * fresh copy of the image each time. The mean, median, minimum, maximum
+ * and standard deviation of the times are reported, and the megapixels
+ * per second of the mean.
+ *
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+public class Benchmark
+{
+    private static final String USAGE =
+        "Usage: java Benchmark [-sizes WxH,...] [-content KIND,...] [-only name,...] "
+        + "[-warmup n] [-iterations n] [-json file]";
+    private static final long SEED = 20261018;
+    // the sizes images are resampled to, relative to their own
+    private static final double[] RESAMPLE_SCALES = { 0.3, 1.5 };
+
+    private final int warmup;
+    private final int iterations;
+    private final List<Result> results;
+
+    /**
+     * An operation to measure on an image.
+     */
+    private interface Task
+    {
+        /**
+         * Run the operation once.
+         * @param image A copy of the test image, which may be changed.
+         */
+        void run(OFImage image) throws IOException;
+    }
+
+    /**
+     * Create a benchmark.
+     * @param warmup The number of runs of each case that are not measured.
+     * @param iterations The number of measured runs of each case.
+     */
+    public Benchmark(int warmup, int iterations)
+    {
+        if(warmup < 0 || iterations < 1) {
+            throw new IllegalArgumentException("warmup must be at least 0, iterations at least 1");
+        }
+        this.warmup = warmup;
+        this.iterations = iterations;
+        results = new ArrayList<>();
+    }
+
+    /**
+     * Measure all operations, or the ones named, on images of each size
+     * and content, printing each result as it is ready.
+     * @param sizes The image sizes, each as {width, height}.
+     * @param contents The kinds of content.
+     * @param only The names of the operations to measure, or null for all.
+     * @throws IOException if a scratch file could not be written.
+     */
+    public void run(List<int[]> sizes, List<SyntheticImage.Content> contents, List<String> only)
+        throws IOException
+    {
+        File scratch = Files.createTempDirectory("imageviewer-benchmark").toFile();
+        try {
+            for(int[] size : sizes) {
+                for(SyntheticImage.Content content : contents) {
+                    OFImage image = SyntheticImage.create(size[0], size[1], content, SEED);
+                    for(Filter filter : FilterChain.createFilters()) {
+                        measure("filter", filter.getName(), image, content, only,
+                                copy -> filter.apply(copy));
+                    }
+                    measure("transform", "Larger", image, content, only,
+                            copy -> new ScaleOperation(true).apply(copy));
+                    measure("transform", "Smaller", image, content, only,
+                            copy -> new ScaleOperation(false).apply(copy));
+                    measure("transform", "Rotate Right", image, content, only,
+                            copy -> new RotateOperation(true).apply(copy));
+                    measure("transform", "Rotate Left", image, content, only,
+                            copy -> new RotateOperation(false).apply(copy));
+                    for(double scale : RESAMPLE_SCALES) {
+                        measureResampling(image, content, only, scale);
+                    }
+                    for(String format : new String[] { "jpg", "png" }) {
+                        File file = new File(scratch, "image." + format);
+                        measure("io", "Save " + format.toUpperCase(), image, content, only,
+                                copy -> ImageFileManager.saveImage(copy, file));
+                        measure("io", "Load " + format.toUpperCase(), image, content, only,
+                                copy -> {
+                                    if(ImageFileManager.loadImage(file) == null) {
+                                        throw new IOException("could not load " + file);
+                                    }
+                                });
+                    }
+                }
+            }
+        }
+        finally {
+            for(File file : scratch.listFiles()) {
+                file.delete();
+            }
+            scratch.delete();
+        }
+    }
+
+    /**
+     * Measure resampling an image to a scale with every kernel, and with
+     * Graphics2D's bilinear and bicubic scaling.
+     */
+    private void measureResampling(OFImage image, SyntheticImage.Content content,
+                                   List<String> only, double scale)
+        throws IOException
+    {
+        int width = Math.max(1, (int) (image.getWidth() * scale));
+        int height = Math.max(1, (int) (image.getHeight() * scale));
+        String size = " " + Math.round(scale * 100) + "%";
+        for(Resampler.Kernel kernel : Resampler.Kernel.values()) {
+            measure("resample", "Resample " + kernel + size, image, content, only,
+                    copy -> Resampler.resample(copy, width, height, kernel));
+        }
+        measure("resample", "Graphics2D Bilinear" + size, image, content, only,
+                copy -> scaleWithGraphics(copy, width, height,
+                                          RenderingHints.VALUE_INTERPOLATION_BILINEAR));
+        measure("resample", "Graphics2D Bicubic" + size, image, content, only,
+                copy -> scaleWithGraphics(copy, width, height,
+                                          RenderingHints.VALUE_INTERPOLATION_BICUBIC));
+    }
+
+    /**
+     * Scale an image by drawing it into a new one with Graphics2D.
+     */
+    private static OFImage scaleWithGraphics(OFImage image, int width, int height,
+                                             Object interpolation)
+    {
+        OFImage result = new OFImage(width, height);
+        Graphics2D g = result.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interpolation);
+        g.drawImage(image, 0, 0, width, height, null);
+        g.dispose();
+        return result;
+    }
+
+    /**
+     * Write the results to a JSON file: an object with the settings and an
+     * array of results.
+     * @param file The file to write.
+     * @throws IOException if the file could not be written.
+     */
+    public void writeJson(File file) throws IOException
+    {
+        try(PrintWriter out = new PrintWriter(file, "UTF-8")) {
+            out.println("{");
+            out.printf(Locale.ROOT, "  \"java\": \"%s\",%n",
+                       escape(System.getProperty("java.version")));
+            out.printf(Locale.ROOT, "  \"processors\": %d,%n",
+                       Runtime.getRuntime().availableProcessors());
+            out.printf(Locale.ROOT, "  \"warmup\": %d,%n", warmup);
+            out.printf(Locale.ROOT, "  \"iterations\": %d,%n", iterations);
+            out.println("  \"results\": [");
+            for(int i = 0; i < results.size(); i++) {
+                out.print("    " + results.get(i).toJson());
+                out.println(i < results.size() - 1 ? "," : "");
+            }
+            out.println("  ]");
+            out.println("}");
+        }
+    }
+
+    /**
+     * Measure one operation on one image, unless it is not among those
+     * asked for.
+     */
+    private void measure(String category, String name, OFImage image,
+                         SyntheticImage.Content content, List<String> only, Task task)
+        throws IOException
+    {
+        if(only != null && !only.contains(name.toLowerCase())) {
+            return;
+        }
+        for(int i = 0; i < warmup; i++) {
+            task.run(new OFImage(image));
+        }
+        long[] nanos = new long[iterations];
+        for(int i = 0; i < iterations; i++) {
+            OFImage copy = new OFImage(image);
+            long start = System.nanoTime();
+            task.run(copy);
+            nanos[i] = System.nanoTime() - start;
+        }
+        Result result = new Result(category, name, image.getWidth(), image.getHeight(),
+                                   content, nanos);
+        results.add(result);
+        System.out.println(result);
+    }
+
+    /**
+     * Escape a string for JSON.
+     */
+    private static String escape(String text)
+    {
+        StringBuilder escaped = new StringBuilder();
+        for(char c : text.toCharArray()) {
+            if(c == '"' || c == '\\') {
+                escaped.append('\\').append(c);
+            }
+            else if(c < 0x20) {
+                escaped.append(String.format("\\u%04x", (int) c));
+            }
+            else {
+                escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    /**
+     * A Result is the measurements of one operation on one image.
+     */
+    private static class Result
+    {
+        private final String category;
+        private final String name;
+        private final int width;
+        private final int height;
+        private final SyntheticImage.Content content;
+        private final double meanMillis;
+        private final double medianMillis;
+        private final double minMillis;
+        private final double maxMillis;
+        private final double stdDevMillis;
+
+        Result(String category, String name, int width, int height,
+               SyntheticImage.Content content, long[] nanos)
+        {
+            this.category = category;
+            this.name = name;
+            this.width = width;
+            this.height = height;
+            this.content = content;
+            long[] sorted = nanos.clone();
+            Arrays.sort(sorted);
+            double sum = 0;
+            for(long n : sorted) {
+                sum += n;
+            }
+            double mean = sum / sorted.length;
+            double squares = 0;
+            for(long n : sorted) {
+                squares += (n - mean) * (n - mean);
+            }
+            meanMillis = mean / 1e6;
+            medianMillis = (sorted[(sorted.length - 1) / 2] + sorted[sorted.length / 2]) / 2e6;
+            minMillis = sorted[0] / 1e6;
+            maxMillis = sorted[sorted.length - 1] / 1e6;
+            stdDevMillis = Math.sqrt(squares / sorted.length) / 1e6;
+        }
+
+        /**
+         * Return the megapixels processed per second, at the mean time.
+         */
+        double getMegapixelsPerSecond()
+        {
+            return width * (double) height / 1e6 / (meanMillis / 1e3);
+        }
+
+        String toJson()
+        {
+            return String.format(Locale.ROOT,
+                "{\"category\": \"%s\", \"name\": \"%s\", \"width\": %d, \"height\": %d, "
+                + "\"content\": \"%s\", \"meanMs\": %.3f, \"medianMs\": %.3f, \"minMs\": %.3f, "
+                + "\"maxMs\": %.3f, \"stdDevMs\": %.3f, \"megapixelsPerSecond\": %.2f}",
+                escape(category), escape(name), width, height, content, meanMillis,
+                medianMillis, minMillis, maxMillis, stdDevMillis, getMegapixelsPerSecond());
+        }
+
+        public String toString()
+        {
+            return String.format(Locale.ROOT,
+                "%-24s %5dx%-5d %-8s mean %9.2f ms  median %9.2f  min %9.2f  sd %7.2f  %8.1f MP/s",
+                name, width, height, content, meanMillis, medianMillis, minMillis,
+                stdDevMillis, getMegapixelsPerSecond());
+        }
+    }
+
+    /**
+     * Run the benchmark from the command line.
+     * @param args The options.
+     */
+    public static void main(String[] args)
+    {
+        System.setProperty("java.awt.headless", "true");
+        List<int[]> sizes = parseSizes("640x480,1920x1080,4000x3000");
+        List<SyntheticImage.Content> contents = Arrays.asList(SyntheticImage.Content.PHOTO,
+                                                              SyntheticImage.Content.NOISE);
+        List<String> only = null;
+        int warmup = 3;
+        int iterations = 10;
+        File json = null;
+        try {
+            for(int i = 0; i < args.length; i += 2) {
+                if(i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + args[i]);
+                }
+                String value = args[i + 1];
+                switch(args[i]) {
+                    case "-sizes":
+                        sizes = parseSizes(value);
+                        break;
+                    case "-content":
+                        contents = new ArrayList<>();
+                        for(String kind : value.split(",")) {
+                            contents.add(SyntheticImage.Content.valueOf(
+                                kind.trim().toUpperCase(Locale.ROOT)));
+                        }
+                        break;
+                    case "-only":
+                        only = new ArrayList<>();
+                        for(String name : value.split(",")) {
+                            only.add(name.trim().toLowerCase());
+                        }
+                        break;
+                    case "-warmup":
+                        warmup = Integer.parseInt(value);
+                        break;
+                    case "-iterations":
+                        iterations = Integer.parseInt(value);
+                        break;
+                    case "-json":
+                        json = new File(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+            Benchmark benchmark = new Benchmark(warmup, iterations);
+            benchmark.run(sizes, contents, only);
+            if(json != null) {
+                benchmark.writeJson(json);
+                System.out.println("Results written to " + json);
+            }
+        }
+        catch(IllegalArgumentException exc) {
+            System.err.println(exc.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        catch(IOException exc) {
+            System.err.println("Benchmark failed: " + exc);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Parse a list of sizes such as "640x480,1920x1080".
+     */
+    private static List<int[]> parseSizes(String text)
+    {
+        List<int[]> sizes = new ArrayList<>();
+        for(String size : text.split(",")) {
+            String[] parts = size.trim().toLowerCase().split("x");
+            if(parts.length != 2) {
+                throw new IllegalArgumentException("Not a size: " + size);
+            }
+            sizes.add(new int[] { Integer.parseInt(parts[0]), Integer.parseInt(parts[1]) });
+        }
+        return sizes;
+    }
+}
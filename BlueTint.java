@@ -1,12 +1,10 @@
-import java.awt.Color;
-
 /**
  * Creates a blue tinted version of the image.
  *
  * @author (Erik Cooke)
  * @version (2019.11.18)
  */
-public class BlueTint extends Filter
+public class BlueTint extends PointFilter
 {
     /**
      * Constructor for objects of class BlueTint.
@@ -18,21 +16,15 @@ public class BlueTint extends Filter
     }
 
     /**
-     * Apply this filter to an image.
-     *
-     * @param  image The image to be changed by the filter.
+     * Create the color transform of this filter: blue is kept, red and
+     * green are removed.
+     * 
+     * @return The transform that this filter applies to every pixel.
      */
-    public void apply(OFImage image)
+    protected ColorTransform createTransform()
     {
-        int width = image.getWidth();
-        int height = image.getHeight();
-        for(int y = 0;y < height;y++)
-        {
-            for(int x = 0;x < width;x++)
-            {
-                Color pix = image.getPixel(x, y);
-                image.setPixel(x, y, new Color(0, 0, pix.getBlue()));
-            }
-        }
+        int[] keep = ColorTransform.table(value -> value);
+        int[] remove = new int[256];
+        return ColorTransform.fromTables(remove, remove, keep);
     }
 }
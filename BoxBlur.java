@@ -0,0 +1,213 @@
+/**
+ * BoxBlur is a small utility class with static methods to blur packed
+ * RGB pixels. A box blur replaces every pixel with the average of the
+ * square of pixels around it; near the edges of the image only the
+ * pixels inside the image are averaged.
+ *
+ * The blur keeps running sums of the pixels in the window, one per
+ * column and one along the row, and slides them along instead of adding
+ * up the whole window for every pixel. The cost per pixel is therefore
+ * the same for every radius.
+ *
+ * A Gaussian blur is approximated by several box blurs in a row.
+ *
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+public class BoxBlur
+{
+    // the number of box blurs used to approximate a Gaussian blur
+    private static final int GAUSSIAN_PASSES = 3;
+
+    /**
+     * Box blur a whole image, in parallel. The source and destination
+     * must be different arrays.
+     *
+     * @param source The pixels to blur.
+     * @param dest The array to write the blurred pixels to.
+     * @param width The width of the image.
+     * @param height The height of the image.
+     * @param radius The radius of the box; 1 averages a 3x3 square.
+     */
+    public static void blur(int[] source, int[] dest, int width, int height, int radius)
+    {
+        FilterEngine.getDefault().forEachStrip(height, width, minimumStripRows(radius),
+            (startRow, endRow) -> blurRows(source, dest, width, height, radius,
+                                           startRow, endRow));
+    }
+
+    /**
+     * Approximate a Gaussian blur of a whole image with several box
+     * blurs. The source and destination must be different arrays; the
+     * source is used as scratch space and is changed as well.
+     *
+     * @param source The pixels to blur.
+     * @param dest The array to write the blurred pixels to.
+     * @param width The width of the image.
+     * @param height The height of the image.
+     * @param sigma The standard deviation of the Gaussian, in pixels.
+     */
+    public static void gaussianBlur(int[] source, int[] dest, int width, int height,
+                                    double sigma)
+    {
+        int[] radii = gaussianRadii(sigma, GAUSSIAN_PASSES);
+        int[] from = source;
+        int[] to = dest;
+        // with an odd number of passes, the last one writes into dest
+        if(radii.length % 2 == 0) {
+            from = dest;
+            to = source;
+            System.arraycopy(source, 0, dest, 0, source.length);
+        }
+        for(int radius : radii) {
+            blur(from, to, width, height, radius);
+            int[] swap = from;
+            from = to;
+            to = swap;
+        }
+    }
+
+    /**
+     * Return how far a pixel of gaussianBlur() reaches: the radii of its
+     * box blurs added up. Pixels further away have no effect on it.
+     *
+     * @param sigma The standard deviation of the Gaussian, in pixels.
+     * @return The distance in pixels.
+     */
+    public static int gaussianHalo(double sigma)
+    {
+        int halo = 0;
+        for(int radius : gaussianRadii(sigma, GAUSSIAN_PASSES)) {
+            halo += radius;
+        }
+        return halo;
+    }
+
+    /**
+     * Return the radii of box blurs that, applied one after the other,
+     * come close to a Gaussian blur with the given standard deviation.
+     *
+     * @param sigma The standard deviation of the Gaussian.
+     * @param passes The number of box blurs.
+     * @return The radius of each box blur.
+     */
+    public static int[] gaussianRadii(double sigma, int passes)
+    {
+        // the ideal box width, rounded down to an odd number
+        double idealWidth = Math.sqrt(12 * sigma * sigma / passes + 1);
+        int lower = (int) Math.floor(idealWidth);
+        if(lower % 2 == 0) {
+            lower--;
+        }
+        int upper = lower + 2;
+        // how many passes use the lower width to get the variance right
+        double idealCount = (12 * sigma * sigma - passes * lower * lower
+                             - 4 * passes * lower - 3 * passes) / (-4.0 * lower - 4);
+        int lowerCount = (int) Math.round(idealCount);
+
+        int[] radii = new int[passes];
+        for(int i = 0; i < passes; i++) {
+            int boxWidth = i < lowerCount ? lower : upper;
+            radii[i] = (boxWidth - 1) / 2;
+        }
+        return radii;
+    }
+
+    /**
+     * Box blur a range of rows. The window around each pixel is clipped
+     * to the image, and the average is rounded down, so a radius of 1
+     * gives exactly the same result as averaging the 3x3 neighbours.
+     *
+     * @param source The pixels to blur.
+     * @param dest The array to write the blurred pixels to.
+     * @param width The width of the image.
+     * @param height The height of the image.
+     * @param radius The radius of the box.
+     * @param startRow The first row to blur.
+     * @param endRow The row after the last row to blur.
+     */
+    public static void blurRows(int[] source, int[] dest, int width, int height, int radius,
+                                int startRow, int endRow)
+    {
+        // the channel sums of the rows in the window, per column
+        int[] columnRed = new int[width];
+        int[] columnGreen = new int[width];
+        int[] columnBlue = new int[width];
+
+        int top = Math.max(startRow - radius, 0);
+        int bottom = Math.min(startRow + radius, height - 1);
+        for(int y = top; y <= bottom; y++) {
+            addRow(source, y * width, width, columnRed, columnGreen, columnBlue, 1);
+        }
+
+        for(int y = startRow; y < endRow; y++) {
+            int rows = bottom - top + 1;
+            int row = y * width;
+
+            // slide the window along the row over the column sums; a
+            // window of a large radius can hold more than an int can
+            long red = 0, green = 0, blue = 0;
+            int right = Math.min(radius, width - 1);
+            for(int x = 0; x <= right; x++) {
+                red += columnRed[x];
+                green += columnGreen[x];
+                blue += columnBlue[x];
+            }
+            int left = 0;
+            for(int x = 0; x < width; x++) {
+                long count = (long) (right - left + 1) * rows;
+                dest[row + x] = OFImage.packRGB((int) (red / count), (int) (green / count),
+                                                (int) (blue / count));
+                if(right < width - 1) {
+                    right++;
+                    red += columnRed[right];
+                    green += columnGreen[right];
+                    blue += columnBlue[right];
+                }
+                if(x - radius >= 0) {
+                    red -= columnRed[left];
+                    green -= columnGreen[left];
+                    blue -= columnBlue[left];
+                    left++;
+                }
+            }
+
+            // move the window down one row
+            if(bottom < height - 1) {
+                bottom++;
+                addRow(source, bottom * width, width, columnRed, columnGreen, columnBlue, 1);
+            }
+            if(y - radius >= 0) {
+                addRow(source, top * width, width, columnRed, columnGreen, columnBlue, -1);
+                top++;
+            }
+        }
+    }
+
+    /**
+     * Add a row of pixels to (or subtract it from) the column sums.
+     */
+    private static void addRow(int[] source, int offset, int width,
+                               int[] red, int[] green, int[] blue, int sign)
+    {
+        for(int x = 0; x < width; x++) {
+            int rgb = source[offset + x];
+            red[x] += sign * OFImage.red(rgb);
+            green[x] += sign * OFImage.green(rgb);
+            blue[x] += sign * OFImage.blue(rgb);
+        }
+    }
+
+    /**
+     * Return the smallest strip worth giving to a thread. Every strip
+     * first has to sum up the rows above and below it, so strips should
+     * be tall compared to the radius.
+     *
+     * @param radius The radius of the box.
+     * @return The minimum number of rows in a strip.
+     */
+    public static int minimumStripRows(int radius)
+    {
+        return 4 * radius + 1;
+    }
+}
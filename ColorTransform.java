@@ -0,0 +1,324 @@
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * A ColorTransform describes a per-pixel color operation in a form that
+ * can be applied very quickly to packed RGB pixels. It has up to three
+ * stages, applied in this order:
+ *
+ *   1. an optional mixing matrix, which computes each output channel as
+ *      a weighted sum of the input channels divided by a common divisor
+ *      (used for gray and channel operations);
+ *   2. a 256-entry lookup table for each channel;
+ *   3. an optional fixed result for pure black pixels (needed to match
+ *      Color.brighter(), which treats black specially).
+ *
+ * Transforms can be joined with then(). Where the second transform is
+ * only tables, the tables are folded into the first, so the result is
+ * again a single table lookup per channel. Otherwise the transforms are
+ * kept as a list of stages that is still applied in a single pass over
+ * the pixels.
+ *
+ * ColorTransforms are immutable, so one instance can be shared by any
+ * number of threads.
+ *
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+public class ColorTransform
+{
+    // the tables hold the result already shifted into the channel's place
+    private final int[] redTable;
+    private final int[] greenTable;
+    private final int[] blueTable;
+
+    // 9 weights, row by row (one row per output channel), or null
+    private final int[] matrix;
+    private final int divisor;
+    // true if all rows of the matrix are the same, so one sum is enough
+    private final boolean singleMix;
+
+    private final boolean hasBlackResult;
+    private final int blackResult;
+
+    // the transform applied to the result of this one, or null
+    private final ColorTransform following;
+
+    /**
+     * Create a color transform from its stages.
+     */
+    private ColorTransform(int[] matrix, int divisor, int[] red, int[] green, int[] blue,
+                           boolean hasBlackResult, int blackResult, ColorTransform following)
+    {
+        this.matrix = matrix;
+        this.divisor = divisor;
+        this.singleMix = matrix != null &&
+                         matrix[0] == matrix[3] && matrix[0] == matrix[6] &&
+                         matrix[1] == matrix[4] && matrix[1] == matrix[7] &&
+                         matrix[2] == matrix[5] && matrix[2] == matrix[8];
+        redTable = shifted(red, 16);
+        greenTable = shifted(green, 8);
+        blueTable = shifted(blue, 0);
+        this.hasBlackResult = hasBlackResult;
+        this.blackResult = blackResult & 0xffffff;
+        this.following = following;
+    }
+
+    /**
+     * Create a color transform that looks up every channel in a table.
+     *
+     * @param red The new value for each red value (256 entries, 0..255).
+     * @param green The new value for each green value.
+     * @param blue The new value for each blue value.
+     * @return The transform.
+     */
+    public static ColorTransform fromTables(int[] red, int[] green, int[] blue)
+    {
+        return new ColorTransform(null, 1, red, green, blue, false, 0, null);
+    }
+
+    /**
+     * Create a color transform that mixes the channels. Output channel i
+     * is (m[3i] * red + m[3i+1] * green + m[3i+2] * blue) / divisor,
+     * rounded down. The weights must not be negative, and no row may add
+     * up to more than the divisor, so the results stay within 0..255.
+     *
+     * @param matrix The 9 weights, one row per output channel.
+     * @param divisor The common divisor.
+     * @return The transform.
+     */
+    public static ColorTransform fromMatrix(int[] matrix, int divisor)
+    {
+        if(matrix.length != 9 || divisor < 1) {
+            throw new IllegalArgumentException("need 9 weights and a positive divisor");
+        }
+        for(int row = 0; row < 3; row++) {
+            int sum = 0;
+            for(int column = 0; column < 3; column++) {
+                int weight = matrix[row * 3 + column];
+                if(weight < 0) {
+                    throw new IllegalArgumentException("weights must not be negative");
+                }
+                sum += weight;
+            }
+            if(sum > divisor) {
+                throw new IllegalArgumentException("a row of weights adds up to more than the divisor");
+            }
+        }
+        int[] identity = table(IntUnaryOperator.identity());
+        return new ColorTransform(matrix.clone(), divisor, identity, identity, identity, false, 0,
+                                  null);
+    }
+
+    /**
+     * Return a transform that does the same as this one and then looks up
+     * every channel of the result in a table.
+     *
+     * @param red The new value for each red value (256 entries, 0..255).
+     * @param green The new value for each green value.
+     * @param blue The new value for each blue value.
+     * @return The new transform.
+     */
+    public ColorTransform withTables(int[] red, int[] green, int[] blue)
+    {
+        if(following != null) {
+            return then(fromTables(red, green, blue));
+        }
+        int[] newRed = new int[256];
+        int[] newGreen = new int[256];
+        int[] newBlue = new int[256];
+        for(int value = 0; value < 256; value++) {
+            newRed[value] = red[redTable[value] >> 16];
+            newGreen[value] = green[greenTable[value] >> 8];
+            newBlue[value] = blue[blueTable[value]];
+        }
+        int newBlack = OFImage.packRGB(red[OFImage.red(blackResult)],
+                                       green[OFImage.green(blackResult)],
+                                       blue[OFImage.blue(blackResult)]);
+        return new ColorTransform(matrix, divisor, newRed, newGreen, newBlue,
+                                  hasBlackResult, newBlack, null);
+    }
+
+    /**
+     * Return a transform that does the same as this one, except that a
+     * pure black pixel always becomes the given color. This is only
+     * possible for a transform that has not been joined to another.
+     *
+     * @param rgb The packed result for pure black pixels.
+     * @return The new transform.
+     */
+    public ColorTransform withBlackResult(int rgb)
+    {
+        if(following != null) {
+            throw new IllegalStateException("cannot set the black result of a joined transform");
+        }
+        return new ColorTransform(matrix, divisor, unshifted(redTable, 16),
+                                  unshifted(greenTable, 8), unshifted(blueTable, 0), true, rgb,
+                                  null);
+    }
+
+    /**
+     * Return a transform that does the same as this one, and then what
+     * another transform does.
+     *
+     * @param next The transform to apply to the results of this one.
+     * @return The joined transform.
+     */
+    public ColorTransform then(ColorTransform next)
+    {
+        if(following != null) {
+            return new ColorTransform(matrix, divisor, unshifted(redTable, 16),
+                                      unshifted(greenTable, 8), unshifted(blueTable, 0),
+                                      hasBlackResult, blackResult, following.then(next));
+        }
+        if(next.matrix == null && !next.hasBlackResult) {
+            // a table after a table is just another table
+            ColorTransform folded = withTables(unshifted(next.redTable, 16),
+                                               unshifted(next.greenTable, 8),
+                                               unshifted(next.blueTable, 0));
+            return next.following == null ? folded : folded.then(next.following);
+        }
+        return new ColorTransform(matrix, divisor, unshifted(redTable, 16),
+                                  unshifted(greenTable, 8), unshifted(blueTable, 0),
+                                  hasBlackResult, blackResult, next);
+    }
+
+    /**
+     * Return the number of stages of this transform that are applied one
+     * after the other to each pixel. Joined transforms that could be
+     * folded into a single table count as one stage.
+     *
+     * @return The number of stages.
+     */
+    public int getStageCount()
+    {
+        return following == null ? 1 : 1 + following.getStageCount();
+    }
+
+    /**
+     * Build a 256-entry lookup table from a function on channel values.
+     *
+     * @param function The function; its results must lie in 0..255.
+     * @return The table.
+     */
+    public static int[] table(IntUnaryOperator function)
+    {
+        int[] table = new int[256];
+        for(int value = 0; value < 256; value++) {
+            table[value] = function.applyAsInt(value);
+        }
+        return table;
+    }
+
+    /**
+     * Transform a single packed pixel.
+     *
+     * @param rgb The packed pixel.
+     * @return The transformed pixel.
+     */
+    public int apply(int rgb)
+    {
+        int result = applyStage(rgb);
+        return following == null ? result : following.apply(result);
+    }
+
+    /**
+     * Transform a single packed pixel by this stage only.
+     */
+    private int applyStage(int rgb)
+    {
+        if(hasBlackResult && (rgb & 0xffffff) == 0) {
+            return blackResult;
+        }
+        int red = OFImage.red(rgb);
+        int green = OFImage.green(rgb);
+        int blue = OFImage.blue(rgb);
+        if(matrix == null) {
+            return redTable[red] | greenTable[green] | blueTable[blue];
+        }
+        int[] m = matrix;
+        int mixedRed = (m[0] * red + m[1] * green + m[2] * blue) / divisor;
+        int mixedGreen = (m[3] * red + m[4] * green + m[5] * blue) / divisor;
+        int mixedBlue = (m[6] * red + m[7] * green + m[8] * blue) / divisor;
+        return redTable[mixedRed] | greenTable[mixedGreen] | blueTable[mixedBlue];
+    }
+
+    /**
+     * Transform a range of packed pixels in one pass.
+     *
+     * @param source The pixels to read.
+     * @param dest The array to write to. May be the same as source.
+     * @param from The index of the first pixel.
+     * @param to The index after the last pixel.
+     */
+    public void apply(int[] source, int[] dest, int from, int to)
+    {
+        int[] r = redTable;
+        int[] g = greenTable;
+        int[] b = blueTable;
+        if(following != null || (matrix != null && (hasBlackResult || !singleMix))) {
+            // the rare cases: take each pixel through all stages in turn
+            for(int i = from; i < to; i++) {
+                dest[i] = apply(source[i]);
+            }
+        }
+        else if(matrix == null && hasBlackResult) {
+            int black = blackResult;
+            for(int i = from; i < to; i++) {
+                int rgb = source[i];
+                dest[i] = (rgb & 0xffffff) == 0 ? black
+                          : r[(rgb >> 16) & 0xff] | g[(rgb >> 8) & 0xff] | b[rgb & 0xff];
+            }
+        }
+        else if(matrix == null) {
+            for(int i = from; i < to; i++) {
+                int rgb = source[i];
+                dest[i] = r[(rgb >> 16) & 0xff] | g[(rgb >> 8) & 0xff] | b[rgb & 0xff];
+            }
+        }
+        else {
+            // every output channel comes from the same mix
+            int wr = matrix[0];
+            int wg = matrix[1];
+            int wb = matrix[2];
+            int d = divisor;
+            for(int i = from; i < to; i++) {
+                int rgb = source[i];
+                int mix = (wr * ((rgb >> 16) & 0xff) + wg * ((rgb >> 8) & 0xff)
+                           + wb * (rgb & 0xff)) / d;
+                dest[i] = r[mix] | g[mix] | b[mix];
+            }
+        }
+    }
+
+    /**
+     * Return a copy of a table with every entry shifted into place.
+     */
+    private static int[] shifted(int[] table, int shift)
+    {
+        if(table.length != 256) {
+            throw new IllegalArgumentException("a table needs 256 entries");
+        }
+        int[] result = new int[256];
+        for(int value = 0; value < 256; value++) {
+            int entry = table[value];
+            if(entry < 0 || entry > 255) {
+                throw new IllegalArgumentException("table entries must lie in 0..255");
+            }
+            result[value] = entry << shift;
+        }
+        return result;
+    }
+
+    /**
+     * Return a copy of a shifted table with the shift undone.
+     */
+    private static int[] unshifted(int[] table, int shift)
+    {
+        int[] result = Arrays.copyOf(table, 256);
+        for(int value = 0; value < 256; value++) {
+            result[value] >>= shift;
+        }
+        return result;
+    }
+}
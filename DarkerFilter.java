@@ -4,8 +4,11 @@
  * @author Michael Kölling and David J. Barnes.
  * @version 1.0
  */
-public class DarkerFilter extends Filter
+public class DarkerFilter extends PointFilter
 {
+    // the same scale factor that Color.darker() uses
+    private static final double FACTOR = 0.7;
+
     /**
      * Constructor for objects of class DarkerFilter.
      * @param name The name of the filter.
@@ -16,18 +19,24 @@ public class DarkerFilter extends Filter
     }
 
     /**
-     * Apply this filter to an image.
+     * Create the color transform of this filter: every channel is scaled
+     * down like Color.darker() does.
      * 
-     * @param  image  The image to be changed by this filter.
+     * @return The transform that this filter applies to every pixel.
+     */
+    protected ColorTransform createTransform()
+    {
+        int[] table = ColorTransform.table(DarkerFilter::darker);
+        return ColorTransform.fromTables(table, table, table);
+    }
+
+    /**
+     * Darken a single color channel the same way Color.darker() does.
+     * @param value The channel value (0..255).
+     * @return The darkened channel value.
      */
-    public void apply(OFImage image)
+    private static int darker(int value)
     {
-        int height = image.getHeight();
-        int width = image.getWidth();
-        for(int y = 0; y < height; y++) {
-            for(int x = 0; x < width; x++) {
-                image.setPixel(x, y, image.getPixel(x, y).darker());
-            }
-        }
+        return (int)(value * FACTOR);
     }
 }
@@ -1,143 +1,89 @@
-import java.awt.Color;
-
-import java.util.List;
-import java.util.ArrayList;
-
 /**
  * An image filter to detect edges and highlight them, a bit like 
  * a colored pencil drawing.
  * 
+ * For each channel, the difference between the largest and smallest
+ * value in the square around a pixel (its morphological gradient) is 
+ * taken, and the pixel is drawn dark where that difference is large.
+ * 
  * @author Michael Kölling and David J. Barnes.
  * @version 1.0
  */
 public class EdgeFilter extends Filter
 {
     private static final int TOLERANCE = 20;
-    
-    private OFImage original;
-    private int width;
-    private int height;
+
+    private int radius;
 
     /**
-     * Constructor for objects of class EdgeFilter.
+     * Constructor for objects of class EdgeFilter. The filter compares
+     * each pixel with its direct neighbours.
      * @param name The name of the filter.
      */
     public EdgeFilter(String name)
     {
-        super(name);
+        this(name, 1);
     }
 
     /**
-     * Apply this filter to an image.
-     * 
-     * @param  image  The image to be changed by this filter.
+     * Constructor for objects of class EdgeFilter with a given radius.
+     * Larger radii give thicker, bolder edges.
+     * @param name The name of the filter.
+     * @param radius The radius of the square to compare; 1 means 3x3.
      */
-    public void apply(OFImage image)
+    public EdgeFilter(String name, int radius)
     {
-        original = new OFImage(image);
-        width = original.getWidth();
-        height = original.getHeight();
-        
-        for(int y = 0; y < height; y++) {
-            for(int x = 0; x < width; x++) {
-                image.setPixel(x, y, edge(x, y));
-            }
+        super(name);
+        if(radius < 1) {
+            throw new IllegalArgumentException("radius must be at least 1");
         }
+        this.radius = radius;
     }
 
     /**
-     * Return a new color that is the smoothed color of a given
-     * position. The "smoothed color" is the color value that is the
-     * average of this pixel and all the adjacent pixels.
-     * @param xpos The x position of the pixel.
-     * @param ypos The y position of the pixel.
-     * @return The smoothed color.
+     * Apply this filter to an image.
+     * 
+     * @param  image  The image to be changed by this filter.
      */
-    private Color edge(int xpos, int ypos)
+    public void apply(OFImage image)
     {
-        List<Color> pixels = new ArrayList<>(9);
-        
-        for(int y = ypos-1; y <= ypos+1; y++) {
-            for(int x = xpos-1; x <= xpos+1; x++) {
-                if( x >= 0 && x < width && y >= 0 && y < height ) {
-                    pixels.add(original.getPixel(x, y));
-                }
-            }
-        }
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] pixels = image.getPixelData();
+        int[] gradient = new int[pixels.length];
+        Morphology.gradient(pixels, gradient, width, height, radius);
 
-        return new Color(255 - diffRed(pixels), 255 - diffGreen(pixels), 255 - diffBlue(pixels));
-    }
-
-    /**
-     * @param pixels The list of pixels to be averaged.
-     * @return The average of all the red values in the given list of pixels.
-     */
-    private int diffRed(List<Color> pixels)
-    {
-        int max = 0;
-        int min = 255;
-        for(Color color : pixels) {
-            int val = color.getRed();
-            if(val > max) {
-                max = val;
-            }
-            if(val < min) {
-                min = val;
+        FilterEngine.getDefault().forEachStrip(height, width, (startRow, endRow) -> {
+            for(int i = startRow * width; i < endRow * width; i++) {
+                int rgb = gradient[i];
+                pixels[i] = OFImage.packRGB(255 - difference(OFImage.red(rgb)),
+                                            255 - difference(OFImage.green(rgb)),
+                                            255 - difference(OFImage.blue(rgb)));
             }
-        }
-        int difference = max - min - TOLERANCE;
-        if(difference < 0) {
-            difference = 0;
-        }
-        return difference;
+        });
     }
 
     /**
-     * @param pixels The list of pixels to be averaged.
-     * @return The average of all the green values in the given list of pixels.
+     * Each pixel is computed from the square of the radius around it.
+     * 
+     * @return The radius.
      */
-    private int diffGreen(List<Color> pixels)
+    public int getHalo()
     {
-        int max = 0;
-        int min = 255;
-        for(Color color : pixels) {
-            int val = color.getGreen();
-            if(val > max) {
-                max = val;
-            }
-            if(val < min) {
-                min = val;
-            }
-        }
-        int difference = max - min - TOLERANCE;
-        if(difference < 0) {
-            difference = 0;
-        }
-        return difference;
+        return radius;
     }
 
     /**
-     * @param pixels The list of pixels to be averaged.
-     * @return The average of all the blue values in the given list of pixels.
+     * @param range The difference between the largest and smallest value 
+     *              of a channel in the neighbourhood.
+     * @return The difference less the tolerance, but never below zero.
      */
-    private int diffBlue(List<Color> pixels)
+    private static int difference(int range)
     {
-        int max = 0;
-        int min = 255;
-        for(Color color : pixels) {
-            int val = color.getBlue();
-            if(val > max) {
-                max = val;
-            }
-            if(val < min) {
-                min = val;
-            }
-        }
-        int difference = max - min - TOLERANCE;
+        int difference = range - TOLERANCE;
         if(difference < 0) {
             difference = 0;
         }
         return difference;
     }
-
 }
@@ -35,4 +35,33 @@ public abstract class Filter
      * @param  image  The image to be changed by this filter.
      */
     public abstract void apply(OFImage image);
+
+    /**
+     * Return how far this filter looks: the largest distance (in pixels,
+     * along x or y) between a pixel it writes and a pixel it reads to
+     * compute it. An image can then be filtered in tiles, each with a
+     * border (halo) of that many pixels around it.
+     * 
+     * The default is -1, which means that the filter depends on the whole
+     * image (for example on the position of a pixel in it), and cannot be
+     * applied tile by tile.
+     * 
+     * @return  The halo in pixels, or -1.
+     */
+    public int getHalo()
+    {
+        return -1;
+    }
+
+    /**
+     * Return a filter that exactly undoes this one, or null if there is
+     * no such filter. The default is null; filters that can be undone
+     * exactly (such as Invert) override this.
+     * 
+     * @return  The inverse filter, or null.
+     */
+    public Filter getInverse()
+    {
+        return null;
+    }
 }
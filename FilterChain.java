@@ -0,0 +1,254 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A FilterChain is a filter that applies a list of filters one after the
+ * other. Runs of consecutive point filters (filters that only change each
+ * pixel on its own, such as Darker, Invert or Red Tint) are joined into a
+ * single color transform, so the whole run takes one pass over the image
+ * instead of one pass per filter. Other filters, such as Smooth, are
+ * applied on their own and end the run.
+ *
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+public class FilterChain extends Filter
+{
+    private List<Filter> filters;
+    // the filters as they are applied: with the point filter runs joined
+    private List<Filter> passes;
+
+    /**
+     * Create a filter chain, named after the filters in it.
+     * @param filters The filters to apply, in order.
+     */
+    public FilterChain(List<Filter> filters)
+    {
+        this(joinNames(filters, ", "), filters);
+    }
+
+    /**
+     * Create a filter chain with a given name.
+     * @param name The name of the chain.
+     * @param filters The filters to apply, in order.
+     */
+    public FilterChain(String name, List<Filter> filters)
+    {
+        super(name);
+        if(filters.isEmpty()) {
+            throw new IllegalArgumentException("a filter chain needs at least one filter");
+        }
+        this.filters = Collections.unmodifiableList(new ArrayList<>(filters));
+        passes = fuse(this.filters);
+    }
+
+    /**
+     * Create a list with all the known filters, the ones that can be named
+     * in a chain.
+     * @return The list of filters.
+     */
+    public static List<Filter> createFilters()
+    {
+        List<Filter> filterList = new ArrayList<>();
+        filterList.add(new DarkerFilter("Darker"));
+        filterList.add(new LighterFilter("Lighter"));
+        filterList.add(new ThresholdFilter("Threshold"));
+        filterList.add(new InvertFilter("Invert"));
+        filterList.add(new SolarizeFilter("Solarize"));
+        filterList.add(new SmoothFilter("Smooth"));
+        filterList.add(new GaussianBlurFilter("Gaussian Blur", 4.0));
+        filterList.add(new PixelizeFilter("Pixelize"));
+        filterList.add(new MirrorFilter("Mirror"));
+        filterList.add(new GrayScaleFilter("Grayscale"));
+        filterList.add(new EdgeFilter("Edge Detection"));
+        filterList.add(new FishEyeFilter("Fish Eye"));
+        filterList.add(new RedChannel("Red Channel"));
+        filterList.add(new GreenChannel("Green Channel"));
+        filterList.add(new BlueChannel("Blue Channel"));
+        filterList.add(new RedTint("Red Tint"));
+        filterList.add(new GreenTint("Green Tint"));
+        filterList.add(new BlueTint("Blue Tint"));
+        filterList.add(new WarholChannel("Warhol Channel"));
+        filterList.add(new WarholFlippedChannel("Warhol Flipped Channel"));
+        filterList.add(new WarholTint("Warhol Tint"));
+        filterList.add(new WarholFlippedTint("Warhol Flipped Tint"));
+
+        return filterList;
+    }
+
+    /**
+     * Create a filter chain from a list of filter names, such as
+     * "Darker, Invert, Red Tint". Names are matched without regard to case.
+     * @param names The filter names, separated by commas.
+     * @param available The filters to choose from.
+     * @return The filter chain.
+     * @throws IllegalArgumentException if a name is not the name of any of
+     *         the available filters, or no names are given.
+     */
+    public static FilterChain fromNames(String names, List<Filter> available)
+    {
+        List<Filter> chosen = new ArrayList<>();
+        for(String name : names.split(",")) {
+            name = name.trim();
+            if(name.isEmpty()) {
+                continue;
+            }
+            Filter match = null;
+            for(Filter filter : available) {
+                if(filter.getName().equalsIgnoreCase(name)) {
+                    match = filter;
+                }
+            }
+            if(match == null) {
+                throw new IllegalArgumentException("Unknown filter: " + name);
+            }
+            chosen.add(match);
+        }
+        if(chosen.isEmpty()) {
+            throw new IllegalArgumentException("No filters given.");
+        }
+        return new FilterChain(chosen);
+    }
+
+    /**
+     * Return the filters of this chain, in the order they are applied.
+     * @return The filters.
+     */
+    public List<Filter> getFilters()
+    {
+        return filters;
+    }
+
+    /**
+     * Return the number of passes over the image that applying this
+     * chain takes.
+     * @return The number of passes.
+     */
+    public int getPassCount()
+    {
+        return passes.size();
+    }
+
+    /**
+     * Apply all filters of this chain to an image.
+     *
+     * @param  image  The image to be changed by this filter.
+     */
+    public void apply(OFImage image)
+    {
+        for(Filter pass : passes) {
+            pass.apply(image);
+        }
+    }
+
+    /**
+     * The passes of a chain reach as far as their halos added up.
+     *
+     * @return The halo in pixels, or -1 if any filter of the chain needs
+     *         the whole image.
+     */
+    public int getHalo()
+    {
+        int halo = 0;
+        for(Filter pass : passes) {
+            if(pass.getHalo() < 0) {
+                return -1;
+            }
+            halo += pass.getHalo();
+        }
+        return halo;
+    }
+
+    /**
+     * Return a chain that exactly undoes this one: the inverses of all
+     * filters in reverse order. There is none if any filter of the chain
+     * cannot be undone exactly.
+     *
+     * @return The inverse chain, or null.
+     */
+    public Filter getInverse()
+    {
+        List<Filter> inverses = new ArrayList<>();
+        for(Filter filter : filters) {
+            Filter inverse = filter.getInverse();
+            if(inverse == null) {
+                return null;
+            }
+            inverses.add(0, inverse);
+        }
+        return new FilterChain(inverses);
+    }
+
+    /**
+     * Join every run of consecutive point filters into one filter.
+     * @param filters The filters of the chain.
+     * @return The passes to apply.
+     */
+    private static List<Filter> fuse(List<Filter> filters)
+    {
+        List<Filter> passes = new ArrayList<>();
+        List<PointFilter> run = new ArrayList<>();
+        for(Filter filter : filters) {
+            if(filter instanceof PointFilter) {
+                run.add((PointFilter) filter);
+            }
+            else {
+                endRun(run, passes);
+                passes.add(filter);
+            }
+        }
+        endRun(run, passes);
+        return passes;
+    }
+
+    /**
+     * Add a run of point filters to the passes, as a single filter, and
+     * clear the run.
+     */
+    private static void endRun(List<PointFilter> run, List<Filter> passes)
+    {
+        if(run.size() == 1) {
+            passes.add(run.get(0));
+        }
+        else if(run.size() > 1) {
+            ColorTransform transform = run.get(0).getTransform();
+            for(int i = 1; i < run.size(); i++) {
+                transform = transform.then(run.get(i).getTransform());
+            }
+            passes.add(new FusedFilter(joinNames(run, " + "), transform));
+        }
+        run.clear();
+    }
+
+    /**
+     * Return the names of some filters, joined by a separator.
+     */
+    private static String joinNames(List<? extends Filter> filters, String separator)
+    {
+        List<String> names = new ArrayList<>();
+        for(Filter filter : filters) {
+            names.add(filter.getName());
+        }
+        return String.join(separator, names);
+    }
+
+    /**
+     * A point filter made by joining the transforms of several others.
+     */
+    private static class FusedFilter extends PointFilter
+    {
+        private ColorTransform transform;
+
+        FusedFilter(String name, ColorTransform transform)
+        {
+            super(name);
+            this.transform = transform;
+        }
+
+        protected ColorTransform createTransform()
+        {
+            return transform;
+        }
+    }
+}
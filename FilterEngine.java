@@ -0,0 +1,215 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A FilterEngine runs image work in parallel. The rows of an image are
+ * split into horizontal strips, and the strips are processed on a
+ * ForkJoinPool. Every strip writes only its own rows, so the result is
+ * exactly the same as processing all rows in order on one thread.
+ *
+ * Work done for a TaskMonitor reports its progress strip by strip, and
+ * stops between strips when the monitor is cancelled.
+ *
+ * The number of threads of the default engine can be set with the
+ * system property "imageviewer.threads"; it defaults to the number of
+ * available processors, which is also used if the property is not a
+ * positive number.
+ *
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+public class FilterEngine
+{
+    // strips smaller than this many pixels are not split any further
+    private static final int MIN_STRIP_PIXELS = 32 * 1024;
+    // aim for this many strips per thread, to even out the load
+    private static final int STRIPS_PER_THREAD = 4;
+
+    private static FilterEngine defaultEngine;
+
+    private final ForkJoinPool pool;
+    private final int parallelism;
+
+    /**
+     * A piece of work that processes a range of rows.
+     */
+    public interface StripTask
+    {
+        /**
+         * Process the rows from startRow (inclusive) to endRow (exclusive).
+         * @param startRow The first row of the strip.
+         * @param endRow The row after the last row of the strip.
+         */
+        void run(int startRow, int endRow);
+    }
+
+    /**
+     * Create a filter engine with a given number of threads.
+     * @param parallelism The number of threads to use (at least 1).
+     */
+    public FilterEngine(int parallelism)
+    {
+        if(parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        this.parallelism = parallelism;
+        pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+    }
+
+    /**
+     * Return the engine that filters use by default.
+     * @return The default engine.
+     */
+    public static synchronized FilterEngine getDefault()
+    {
+        if(defaultEngine == null) {
+            int threads = Integer.getInteger("imageviewer.threads", 0);
+            if(threads < 1) {
+                threads = Runtime.getRuntime().availableProcessors();
+            }
+            defaultEngine = new FilterEngine(threads);
+        }
+        return defaultEngine;
+    }
+
+    /**
+     * Replace the engine that filters use by default. The previous
+     * default engine is shut down.
+     * @param engine The new default engine.
+     */
+    public static synchronized void setDefault(FilterEngine engine)
+    {
+        if(defaultEngine != null && defaultEngine != engine) {
+            defaultEngine.shutdown();
+        }
+        defaultEngine = engine;
+    }
+
+    /**
+     * Return the number of threads of this engine.
+     * @return The number of threads.
+     */
+    public int getParallelism()
+    {
+        return parallelism;
+    }
+
+    /**
+     * Apply a strip filter to an image. Filters that read neighbouring
+     * pixels read from an unchanged copy of the image, and all filters
+     * write their results straight into the image.
+     * @param filter The filter to apply.
+     * @param image The image to be changed by the filter.
+     */
+    public void apply(StripFilter filter, OFImage image)
+    {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] dest = image.getPixelData();
+        int[] source = filter.needsSourceCopy() ? dest.clone() : dest;
+        forEachStrip(filter.getRowCount(width, height), width,
+                     filter.getMinimumStripRows(width, height),
+                     (startRow, endRow) -> filter.filterRows(source, dest, width, height,
+                                                             startRow, endRow));
+    }
+
+    /**
+     * Split a range of rows into strips and run a task on each of them,
+     * in parallel. This method returns when all strips are done.
+     * @param rows The number of rows.
+     * @param rowLength The number of pixels in a row, used to decide
+     *                  how finely the work is worth splitting.
+     * @param task The task to run on each strip.
+     */
+    public void forEachStrip(int rows, int rowLength, StripTask task)
+    {
+        forEachStrip(rows, rowLength, 1, task);
+    }
+
+    /**
+     * Split a range of rows into strips of at least a given height and
+     * run a task on each of them, in parallel. This is useful for work
+     * that has a fixed setup cost per strip.
+     * @param rows The number of rows.
+     * @param rowLength The number of pixels in a row.
+     * @param minStripRows The smallest number of rows worth a strip.
+     * @param task The task to run on each strip.
+     */
+    public void forEachStrip(int rows, int rowLength, int minStripRows, StripTask task)
+    {
+        if(rows <= 0) {
+            return;
+        }
+        TaskMonitor monitor = TaskMonitor.current();
+        if(monitor != null) {
+            task = monitored(task, monitor, rows, rowLength);
+        }
+        int minRows = Math.max(minStripRows, MIN_STRIP_PIXELS / Math.max(1, rowLength));
+        int grain = Math.max(minRows, rows / (parallelism * STRIPS_PER_THREAD));
+        if(pool == null || rows <= grain) {
+            task.run(0, rows);
+        }
+        else {
+            pool.invoke(new StripAction(task, 0, rows, grain));
+        }
+    }
+
+    /**
+     * Wrap a task so that it reports each strip to a monitor, and does not
+     * start once the monitor has been cancelled.
+     */
+    private static StripTask monitored(StripTask task, TaskMonitor monitor, int rows,
+                                       int rowLength)
+    {
+        monitor.beginPass((long) rows * rowLength);
+        return (startRow, endRow) -> {
+            monitor.checkCancelled();
+            task.run(startRow, endRow);
+            monitor.worked((long) (endRow - startRow) * rowLength);
+        };
+    }
+
+    /**
+     * Stop the threads of this engine. It must not be used afterwards.
+     */
+    public void shutdown()
+    {
+        if(pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * A fork/join action that halves its range of rows until the pieces
+     * are small enough to run directly.
+     */
+    private static class StripAction extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final StripTask task;
+        private final int startRow;
+        private final int endRow;
+        private final int grain;
+
+        StripAction(StripTask task, int startRow, int endRow, int grain)
+        {
+            this.task = task;
+            this.startRow = startRow;
+            this.endRow = endRow;
+            this.grain = grain;
+        }
+
+        protected void compute()
+        {
+            if(endRow - startRow <= grain) {
+                task.run(startRow, endRow);
+            }
+            else {
+                int middle = (startRow + endRow) >>> 1;
+                invokeAll(new StripAction(task, startRow, middle, grain),
+                          new StripAction(task, middle, endRow, grain));
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/**
+ * A FilterOperation applies a filter to the image, in place.
+ * 
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+public class FilterOperation extends ImageOperation
+{
+    private Filter filter;
+
+    /**
+     * Create an operation that applies a filter.
+     * @param filter The filter to apply.
+     */
+    public FilterOperation(Filter filter)
+    {
+        super(filter.getName());
+        this.filter = filter;
+    }
+
+    /**
+     * Return the filter of this operation.
+     * @return The filter.
+     */
+    public Filter getFilter()
+    {
+        return filter;
+    }
+
+    /**
+     * Apply the filter to an image.
+     * 
+     * @param  image  The image to change.
+     * @return The same image, changed.
+     */
+    public OFImage apply(OFImage image)
+    {
+        ImageEvents.applyFilter(filter, image);
+        return image;
+    }
+
+    /**
+     * Return an operation that applies the inverse filter, if the filter
+     * has one.
+     * 
+     * @return  The inverse operation, or null.
+     */
+    public ImageOperation getInverse()
+    {
+        Filter inverse = filter.getInverse();
+        return inverse == null ? null : new FilterOperation(inverse);
+    }
+}
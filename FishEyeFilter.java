@@ -1,73 +1,64 @@
-import java.awt.Color;
-
 /**
  * An image filter to create an effect similar to a fisheye camera lens.
  * (Works especially well on portraits.)
- * 
+ *
+ * Each column is moved sideways, and each row up or down, by a sine of its
+ * position, so the middle of the image bulges out. The strength is the
+ * largest distance, in pixels, that a column or row is moved.
+ *
  * @author Michael Kölling and David J. Barnes.
  * @version 1.0
  */
-public class FishEyeFilter extends Filter
+public class FishEyeFilter extends WarpFilter
 {
     // constants:
-    private final static int SCALE = 20;   // this defines the strenght of the filter
+    public final static double DEFAULT_STRENGTH = 20;
     private final static double TWO_PI = 2 * Math.PI;
 
+    private final double strength;
+
     /**
-     * Constructor for objects of class LensFilter.
+     * Constructor for objects of class FishEyeFilter, with the default
+     * strength.
      * @param name The name of the filter.
      */
     public FishEyeFilter(String name)
     {
-        super(name);
+        this(name, DEFAULT_STRENGTH);
     }
 
     /**
-     * Apply this filter to an image.
-     * 
-     * @param  image  The image to be changed by this filter.
+     * Create a fisheye filter with a given strength.
+     * @param name The name of the filter.
+     * @param strength The largest distance that pixels are moved.
      */
-    public void apply(OFImage image)
+    public FishEyeFilter(String name, double strength)
     {
-        int height = image.getHeight();
-        int width = image.getWidth();
-        OFImage original = new OFImage(image);
-
-        int[] xa = computeXArray(width);
-        int[] ya = computeYArray(height);
-        
-        for(int y = 0; y < height; y++) {
-            for(int x = 0; x < width; x++) {
-                image.setPixel(x, y, original.getPixel(x + xa[x], y + ya[y]));
-            }
-        }
+        super(name, Interpolation.BILINEAR);
+        this.strength = strength;
     }
 
     /**
-     * Compute and return an array of horizontal offsets for each pixel column.
-     * These can then be applied as the horizontal offset for each pixel.
+     * Return the strength of this filter.
+     * @return The largest distance that pixels are moved.
      */
-    private int[] computeXArray(int width)
+    public double getStrength()
     {
-        int[] xArray = new int[width];
-        
-        for(int i=0; i < width; i++) {
-            xArray[i] = (int)(Math.sin( ((double)i / width) * TWO_PI) * SCALE);
-        }
-        return xArray;
+        return strength;
     }
 
     /**
-     * Compute and return an array of vertical offsets for each pixel row.
-     * These can then be applied as the vertical offset for each pixel.
+     * Make the map of the fisheye for an image size: each column and each
+     * row is taken from a position offset by a sine of where it is.
+     *
+     * @param  width   The width of the image.
+     * @param  height  The height of the image.
+     * @return The map.
      */
-    private int[] computeYArray(int height)
+    protected WarpMap createMap(int width, int height)
     {
-        int[] yArray = new int[height];
-        
-        for(int i=0; i < height; i++) {
-            yArray[i] = (int)(Math.sin( ((double)i / height) * TWO_PI) * SCALE);
-        }
-        return yArray;
+        return WarpMap.separable(width, height,
+                                 x -> x + Math.sin(x / width * TWO_PI) * strength,
+                                 y -> y + Math.sin(y / height * TWO_PI) * strength);
     }
 }
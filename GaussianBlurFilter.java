@@ -0,0 +1,48 @@
+/**
+ * An image filter that blurs the image like an out of focus lens. The
+ * blur is a close approximation of a Gaussian blur, made of several box
+ * blurs, and takes the same time for any strength.
+ *
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+public class GaussianBlurFilter extends Filter
+{
+    private double sigma;
+
+    /**
+     * Constructor for objects of class GaussianBlurFilter.
+     * @param name The name of the filter.
+     * @param sigma The strength of the blur: the standard deviation of 
+     *              the Gaussian, in pixels.
+     */
+    public GaussianBlurFilter(String name, double sigma)
+    {
+        super(name);
+        if(sigma <= 0) {
+            throw new IllegalArgumentException("sigma must be positive");
+        }
+        this.sigma = sigma;
+    }
+
+    /**
+     * Apply this filter to an image.
+     * 
+     * @param  image  The image to be changed by this filter.
+     */
+    public void apply(OFImage image)
+    {
+        int[] pixels = image.getPixelData();
+        BoxBlur.gaussianBlur(pixels.clone(), pixels, image.getWidth(), image.getHeight(), sigma);
+    }
+
+    /**
+     * The box blurs reach as far as their radii added up.
+     * 
+     * @return The halo in pixels.
+     */
+    public int getHalo()
+    {
+        return BoxBlur.gaussianHalo(sigma);
+    }
+}
@@ -1,13 +1,16 @@
-import java.awt.Color;
-
 /**
  * An image filter to remove color from an image.
  * 
  * @author Michael Kölling and David J. Barnes.
  * @version 1.0
  */
-public class GrayScaleFilter extends Filter
+public class GrayScaleFilter extends PointFilter
 {
+    // mixing weights that give every channel the average of all three
+    private static final int[] AVERAGE = { 1, 1, 1,
+                                           1, 1, 1,
+                                           1, 1, 1 };
+
 	/**
 	 * Constructor for objects of class GrayScaleFilter.
 	 * @param name The name of the filter.
@@ -18,20 +21,13 @@ public class GrayScaleFilter extends Filter
 	}
 
     /**
-     * Apply this filter to an image.
+     * Create the color transform of this filter: every channel becomes
+     * the average of the three.
      * 
-     * @param  image  The image to be changed by this filter.
+     * @return The transform that this filter applies to every pixel.
      */
-    public void apply(OFImage image)
+    protected ColorTransform createTransform()
     {
-        int height = image.getHeight();
-        int width = image.getWidth();
-        for(int y = 0; y < height; y++) {
-            for(int x = 0; x < width; x++) {
-                Color pix = image.getPixel(x, y);
-                int avg = (pix.getRed() + pix.getGreen() + pix.getBlue()) / 3;
-                image.setPixel(x, y, new Color(avg, avg, avg));
-            }
-        }
+        return ColorTransform.fromMatrix(AVERAGE, 3);
     }
 }
@@ -0,0 +1,241 @@
+import java.io.File;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+/**
+ * An ImageCache keeps decoded images of files, so that a file that is
+ * shown again does not have to be decoded again. Files can also be decoded
+ * ahead of time, in the background, before they are asked for.
+ *
+ * Images are kept by the path and the modification time of their file, so
+ * a file that has changed on disk is decoded again. The cache holds at most
+ * a budget of bytes; the images used least recently are dropped first.
+ *
+ * The images handed out are shared: they must not be changed.
+ *
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+public class ImageCache
+{
+    // the number of files decoded at the same time
+    private static final int DECODE_THREADS = 2;
+
+    private final long memoryBudget;
+    private final Function<File, OFImage> loader;
+    // the decoded images, least recently used first
+    private final LinkedHashMap<Key, OFImage> images;
+    // the decodes that have been started or are waiting to start
+    private final Map<Key, CompletableFuture<OFImage>> pending;
+    // the pending decodes that only prefetch, and may be dropped
+    private final Set<Key> prefetched;
+    private final ExecutorService decoder;
+    private long memoryUsed;
+
+    /**
+     * Create an empty image cache.
+     * @param memoryBudget The number of bytes of heap the images may use.
+     * @param loader Decodes a file; it returns null if the file could not
+     *               be read.
+     */
+    public ImageCache(long memoryBudget, Function<File, OFImage> loader)
+    {
+        this.memoryBudget = memoryBudget;
+        this.loader = loader;
+        images = new LinkedHashMap<>(16, 0.75f, true);
+        pending = new HashMap<>();
+        prefetched = new HashSet<>();
+        decoder = Executors.newFixedThreadPool(DECODE_THREADS, task -> {
+            Thread thread = new Thread(task, "image cache");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    /**
+     * Return the image of a file. If it is in the cache, the future is
+     * already complete; otherwise the file is decoded in the background.
+     * @param file The image file.
+     * @return The image, or null if the file could not be read.
+     */
+    public synchronized CompletableFuture<OFImage> get(File file)
+    {
+        Key key = new Key(file);
+        OFImage image = images.get(key);
+        if(image != null) {
+            return CompletableFuture.completedFuture(image);
+        }
+        prefetched.remove(key);
+        return decode(key);
+    }
+
+    /**
+     * Decode files in the background, so that they are ready when asked for.
+     * Earlier prefetches of other files that have not started yet are
+     * dropped, so that only the files wanted now are decoded.
+     * @param files The files to decode.
+     */
+    public synchronized void prefetch(Collection<File> files)
+    {
+        Set<Key> wanted = new HashSet<>();
+        for(File file : files) {
+            wanted.add(new Key(file));
+        }
+        for(Iterator<Key> it = prefetched.iterator(); it.hasNext(); ) {
+            Key key = it.next();
+            if(!wanted.contains(key)) {
+                // a decode that has started runs to the end regardless
+                pending.remove(key).cancel(false);
+                it.remove();
+            }
+        }
+        for(Key key : wanted) {
+            if(!images.containsKey(key) && !pending.containsKey(key)) {
+                prefetched.add(key);
+                decode(key);
+            }
+        }
+    }
+
+    /**
+     * Forget all images, and drop the prefetches.
+     */
+    public synchronized void clear()
+    {
+        for(Key key : prefetched) {
+            pending.remove(key).cancel(false);
+        }
+        prefetched.clear();
+        images.clear();
+        memoryUsed = 0;
+    }
+
+    /**
+     * @return The number of bytes the images in the cache use.
+     */
+    public synchronized long getMemoryUsed()
+    {
+        return memoryUsed;
+    }
+
+    /**
+     * @return The number of bytes the images may use.
+     */
+    public long getMemoryBudget()
+    {
+        return memoryBudget;
+    }
+
+    /**
+     * Start decoding a file in the background, unless it is already being
+     * decoded.
+     */
+    private CompletableFuture<OFImage> decode(Key key)
+    {
+        CompletableFuture<OFImage> future = pending.get(key);
+        if(future != null) {
+            return future;
+        }
+        CompletableFuture<OFImage> decoding = new CompletableFuture<>();
+        pending.put(key, decoding);
+        decoder.execute(() -> {
+            if(decoding.isDone()) {
+                return;  // dropped before it started
+            }
+            try {
+                OFImage image = loader.apply(key.file);
+                synchronized(this) {
+                    if(pending.get(key) == decoding) {
+                        pending.remove(key);
+                        prefetched.remove(key);
+                        if(image != null) {
+                            add(key, image);
+                        }
+                    }
+                }
+                decoding.complete(image);
+            }
+            catch(RuntimeException | OutOfMemoryError exc) {
+                synchronized(this) {
+                    pending.remove(key, decoding);
+                    prefetched.remove(key);
+                }
+                decoding.completeExceptionally(exc);
+            }
+        });
+        return decoding;
+    }
+
+    /**
+     * Put an image into the cache, and drop the least recently used images
+     * while the cache holds more than its budget. An image larger than the
+     * whole budget is not kept.
+     */
+    private void add(Key key, OFImage image)
+    {
+        long bytes = getBytes(image);
+        if(bytes > memoryBudget) {
+            return;
+        }
+        OFImage old = images.put(key, image);
+        if(old != null) {
+            memoryUsed -= getBytes(old);
+        }
+        memoryUsed += bytes;
+        Iterator<OFImage> eldest = images.values().iterator();
+        while(memoryUsed > memoryBudget) {
+            memoryUsed -= getBytes(eldest.next());
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Return the number of bytes the pixels of an image use.
+     */
+    private static long getBytes(OFImage image)
+    {
+        return 4L * image.getWidth() * image.getHeight();
+    }
+
+    /**
+     * A Key names a file as it is now: a file that is written again gets
+     * a new key.
+     */
+    private static class Key
+    {
+        private final File file;
+        private final String path;
+        private final long modified;
+
+        Key(File file)
+        {
+            this.file = file;
+            path = file.getAbsolutePath();
+            modified = file.lastModified();
+        }
+
+        public boolean equals(Object other)
+        {
+            if(!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return path.equals(key.path) && modified == key.modified;
+        }
+
+        public int hashCode()
+        {
+            return path.hashCode() * 31 + Long.hashCode(modified);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+import java.io.File;
+import javax.imageio.ImageIO;
+
+/**
+ * An ImageEncoding says how an image is written to a file: in which format,
+ * and, for JPEG and PNG, how hard to compress it. Higher JPEG quality gives
+ * larger files that look better; a higher PNG compression level gives
+ * smaller files (PNG loses nothing) but takes longer to write.
+ *
+ * Encodings cannot be changed; the with... methods return changed copies.
+ *
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+public class ImageEncoding
+{
+    // the quality and level ImageIO uses when none is given
+    public static final float DEFAULT_JPEG_QUALITY = 0.75f;
+    public static final int DEFAULT_PNG_COMPRESSION = 6;
+    // the format used for files without a known extension
+    public static final String DEFAULT_FORMAT = "jpg";
+
+    // the encoding that takes the format from the file name
+    public static final ImageEncoding DEFAULT =
+        new ImageEncoding(null, DEFAULT_JPEG_QUALITY, DEFAULT_PNG_COMPRESSION);
+
+    private final String format;
+    private final float jpegQuality;
+    private final int pngCompression;
+
+    /**
+     * Create an encoding.
+     * @param format The format name, such as "jpg" or "png", or null to
+     *               take it from the extension of the file written.
+     * @param jpegQuality The JPEG quality, from 0 (smallest) to 1 (best).
+     * @param pngCompression The PNG compression level, from 0 (fastest)
+     *                       to 9 (smallest).
+     */
+    public ImageEncoding(String format, float jpegQuality, int pngCompression)
+    {
+        if(jpegQuality < 0 || jpegQuality > 1) {
+            throw new IllegalArgumentException("JPEG quality must be from 0 to 1");
+        }
+        if(pngCompression < 0 || pngCompression > 9) {
+            throw new IllegalArgumentException("PNG compression must be from 0 to 9");
+        }
+        this.format = format == null ? null : normalize(format);
+        this.jpegQuality = jpegQuality;
+        this.pngCompression = pngCompression;
+    }
+
+    /**
+     * @param format The format name, or null to take it from the file name.
+     * @return This encoding, with another format.
+     */
+    public ImageEncoding withFormat(String format)
+    {
+        return new ImageEncoding(format, jpegQuality, pngCompression);
+    }
+
+    /**
+     * @param quality The JPEG quality, from 0 to 1.
+     * @return This encoding, with another JPEG quality.
+     */
+    public ImageEncoding withJpegQuality(float quality)
+    {
+        return new ImageEncoding(format, quality, pngCompression);
+    }
+
+    /**
+     * @param level The PNG compression level, from 0 to 9.
+     * @return This encoding, with another PNG compression level.
+     */
+    public ImageEncoding withPngCompression(int level)
+    {
+        return new ImageEncoding(format, jpegQuality, level);
+    }
+
+    /**
+     * @return The format name, or null if it is taken from the file name.
+     */
+    public String getFormat()
+    {
+        return format;
+    }
+
+    /**
+     * Return the format to write a file in: the format of this encoding,
+     * or else the one its extension names if images can be written in it,
+     * or else DEFAULT_FORMAT.
+     * @param file The file to write.
+     * @return The format name, in lower case, with "jpeg" as "jpg".
+     */
+    public String getFormat(File file)
+    {
+        if(format != null) {
+            return format;
+        }
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        if(dot > 0 && dot < name.length() - 1) {
+            String extension = normalize(name.substring(dot + 1));
+            if(ImageIO.getImageWritersByFormatName(extension).hasNext()) {
+                return extension;
+            }
+        }
+        return DEFAULT_FORMAT;
+    }
+
+    /**
+     * @return The JPEG quality, from 0 to 1.
+     */
+    public float getJpegQuality()
+    {
+        return jpegQuality;
+    }
+
+    /**
+     * @return The PNG compression level, from 0 to 9.
+     */
+    public int getPngCompression()
+    {
+        return pngCompression;
+    }
+
+    /**
+     * Return a format name in lower case, with "jpeg" as "jpg".
+     */
+    private static String normalize(String format)
+    {
+        String name = format.toLowerCase();
+        return name.equals("jpeg") ? "jpg" : name;
+    }
+}
@@ -0,0 +1,170 @@
+import java.util.function.UnaryOperator;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * ImageEvents are the Java Flight Recorder events of the application:
+ * loading, filtering, transforming, saving and painting an image. Each
+ * event has the size of the image and the bytes of pixel data (and file)
+ * the work went through; the recorder adds the thread and the time taken.
+ *
+ * A recording, for example one started with
+ *
+ *   java -XX:StartFlightRecording=filename=viewer.jfr ImageViewer
+ *
+ * then shows where the time goes, next to the recorder's own allocation
+ * and garbage collection events, without attaching a profiler. The events
+ * are under "Image Viewer" in JDK Mission Control.
+ *
+ * The events cost next to nothing when they are not recorded: the values
+ * of an event are only worked out when shouldCommit says it will be kept,
+ * and the JIT compiler removes the rest.
+ *
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+public class ImageEvents
+{
+    /**
+     * The fields that all image events have.
+     */
+    @Category("Image Viewer")
+    @StackTrace(false)
+    abstract static class ImageEvent extends Event
+    {
+        @Label("Width")
+        int width;
+
+        @Label("Height")
+        int height;
+
+        @Label("Bytes Touched")
+        @Description("The bytes of pixel data and file read and written")
+        @DataAmount
+        long bytes;
+
+        /**
+         * Set the size of the image.
+         */
+        void setSize(int width, int height)
+        {
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    /**
+     * An image file is read.
+     */
+    @Name("imageviewer.Load")
+    @Label("Load Image")
+    static class LoadEvent extends ImageEvent
+    {
+        @Label("File")
+        String file;
+    }
+
+    /**
+     * An image file is written.
+     */
+    @Name("imageviewer.Save")
+    @Label("Save Image")
+    static class SaveEvent extends ImageEvent
+    {
+        @Label("File")
+        String file;
+
+        @Label("Format")
+        String format;
+    }
+
+    /**
+     * A filter is applied to an image.
+     */
+    @Name("imageviewer.Filter")
+    @Label("Apply Filter")
+    static class FilterEvent extends ImageEvent
+    {
+        @Label("Filter")
+        String filter;
+    }
+
+    /**
+     * An image is rotated or scaled.
+     */
+    @Name("imageviewer.Transform")
+    @Label("Transform Image")
+    static class TransformEvent extends ImageEvent
+    {
+        @Label("Operation")
+        String operation;
+
+        @Label("Result Width")
+        int resultWidth;
+
+        @Label("Result Height")
+        int resultHeight;
+    }
+
+    /**
+     * The image panel is painted. The size is that of the part of the
+     * image that is drawn.
+     */
+    @Name("imageviewer.Paint")
+    @Label("Paint Image")
+    static class PaintEvent extends ImageEvent
+    {
+        @Label("Tiled")
+        @Description("Whether the pixels were read from the tiles of a large image")
+        boolean tiled;
+    }
+
+    /**
+     * Apply a filter to an image, recording it as a FilterEvent.
+     * @param filter The filter.
+     * @param image The image to change.
+     */
+    public static void applyFilter(Filter filter, OFImage image)
+    {
+        FilterEvent event = new FilterEvent();
+        event.begin();
+        filter.apply(image);
+        if(event.shouldCommit()) {
+            event.filter = filter.getName();
+            event.setSize(image.getWidth(), image.getHeight());
+            // each pixel is read and written
+            event.bytes = 8L * image.getWidth() * image.getHeight();
+            event.commit();
+        }
+    }
+
+    /**
+     * Rotate or scale an image, recording it as a TransformEvent.
+     * @param name The name of the transform.
+     * @param image The image to transform.
+     * @param transform The transform.
+     * @return The transformed image.
+     */
+    public static OFImage applyTransform(String name, OFImage image,
+                                         UnaryOperator<OFImage> transform)
+    {
+        TransformEvent event = new TransformEvent();
+        event.begin();
+        OFImage result = transform.apply(image);
+        if(event.shouldCommit()) {
+            event.operation = name;
+            event.setSize(image.getWidth(), image.getHeight());
+            event.resultWidth = result.getWidth();
+            event.resultHeight = result.getHeight();
+            event.bytes = 4L * image.getWidth() * image.getHeight()
+                          + 4L * result.getWidth() * result.getHeight();
+            event.commit();
+        }
+        return result;
+    }
+}
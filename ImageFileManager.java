@@ -1,22 +1,60 @@
+import java.awt.*;
 import java.awt.image.*;
 import javax.imageio.*;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
 import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * ImageFileManager is a small utility class with static methods to load
  * and save images.
  * 
- * The files on disk can be in JPG or PNG image format. For files written
- * by this class, the format is determined by the constant IMAGE_FORMAT.
+ * The files on disk can be in JPG or PNG image format, or any other format
+ * ImageIO knows. Files are written in the format their extension names, or
+ * the one an ImageEncoding gives, with the JPEG quality or PNG compression
+ * it gives. A file is written under a temporary name first, so a failed
+ * save does not destroy an earlier version. Images can also be saved in
+ * the background.
+ * 
+ * Images can also be loaded at reduced size (the decoder skips rows and
+ * columns, so the full image is never held in memory) or as a rectangle
+ * cut out of a larger image. Wherever the decoder supports it, pixels are
+ * decoded straight into the OFImage, without an intermediate copy.
+ * 
+ * The image files in a folder can be listed, for browsing through them.
+ * 
+ * @author Erik Cooke
+ * @version 2026.10.18
+ * Added subsampled and region loading.
  * 
  * @author Michael Kölling and David J. Barnes.
  * @version 2.0
  */
 public class ImageFileManager
 {
-    // A constant for the image format that this writer uses for writing.
-    // Available formats are "jpg" and "png".
-    private static final String IMAGE_FORMAT = "jpg";
+    // the size of the buffer between the encoder and the file
+    private static final int WRITE_BUFFER_SIZE = 256 * 1024;
+    // the threads that save images in the background
+    private static final ExecutorService encoder = Executors.newFixedThreadPool(2, task -> {
+        Thread thread = new Thread(task, "image encoder");
+        thread.setDaemon(true);
+        return thread;
+    });
     
     /**
      * Read an image file from disk and return it as an image. This method
@@ -29,13 +67,195 @@ public class ImageFileManager
      */
     public static OFImage loadImage(File imageFile)
     {
-        try {
-            BufferedImage image = ImageIO.read(imageFile);
-            if(image == null || (image.getWidth(null) < 0)) {
+        return load(imageFile, null, 1);
+    }
+
+    /**
+     * Read an image file from disk at a size that fits into a given box.
+     * The image is reduced by a whole factor, by decoding only every n-th
+     * row and column, so memory and time are saved while decoding. An
+     * image that already fits is loaded at full size. In case of any 
+     * problem this method returns null.
+     * 
+     * @param imageFile  The image file to be loaded.
+     * @param maxWidth   The largest width wanted.
+     * @param maxHeight  The largest height wanted.
+     * @return           The image object or null if it could not be read.
+     */
+    public static OFImage loadImage(File imageFile, int maxWidth, int maxHeight)
+    {
+        Dimension size = getImageSize(imageFile);
+        if(size == null) {
+            return null;
+        }
+        return load(imageFile, null, getSubsampling(size, maxWidth, maxHeight));
+    }
+
+    /**
+     * Read an image file from disk at a size that fits into a given box,
+     * like loadImage, but without counting it in the operation metrics or
+     * the flight recorder. This is for decodes the user did not ask for,
+     * such as those that make thumbnails.
+     *
+     * @param imageFile  The image file to be decoded.
+     * @param maxWidth   The largest width wanted.
+     * @param maxHeight  The largest height wanted.
+     * @return           The image object or null if it could not be read.
+     */
+    public static OFImage decodeImage(File imageFile, int maxWidth, int maxHeight)
+    {
+        Dimension size = getImageSize(imageFile);
+        if(size == null) {
+            return null;
+        }
+        return decode(imageFile, null, getSubsampling(size, maxWidth, maxHeight));
+    }
+
+    /**
+     * Read a rectangle of an image file from disk. Only that part of the
+     * file is decoded into memory. In case of any problem this method
+     * returns null.
+     * 
+     * @param imageFile    The image file to be loaded.
+     * @param region       The rectangle to load, in pixels of the full
+     *                     image. It is cut to the bounds of the image.
+     * @param subsampling  1 to load every pixel, n to load only every n-th
+     *                     row and column.
+     * @return             The image object or null if it could not be read.
+     */
+    public static OFImage loadRegion(File imageFile, Rectangle region, int subsampling)
+    {
+        if(subsampling < 1) {
+            throw new IllegalArgumentException("subsampling must be at least 1");
+        }
+        return load(imageFile, region, subsampling);
+    }
+
+    /**
+     * Return the size of the image in a file, without decoding it.
+     * 
+     * @param imageFile  The image file.
+     * @return           The size, or null if the file could not be read.
+     */
+    public static Dimension getImageSize(File imageFile)
+    {
+        try(ImageInputStream input = ImageIO.createImageInputStream(imageFile)) {
+            ImageReader reader = getReader(input);
+            if(reader == null) {
+                return null;
+            }
+            try {
+                return new Dimension(reader.getWidth(0), reader.getHeight(0));
+            }
+            finally {
+                reader.dispose();
+            }
+        }
+        catch(IOException exc) {
+            return null;
+        }
+    }
+
+    /**
+     * Return the image files in a folder, sorted by name. Files are taken
+     * to be images by the extension of their name, so this is quick even
+     * for large folders.
+     * 
+     * @param directory  The folder.
+     * @return           The image files, with absolute paths.
+     */
+    public static List<File> listImageFiles(File directory)
+    {
+        List<String> suffixes = Arrays.asList(ImageIO.getReaderFileSuffixes());
+        File[] files = directory.getAbsoluteFile().listFiles(candidate -> {
+            String name = candidate.getName();
+            int dot = name.lastIndexOf('.');
+            return dot >= 0 && candidate.isFile()
+                   && suffixes.contains(name.substring(dot + 1).toLowerCase());
+        });
+        List<File> images = new ArrayList<>();
+        if(files != null) {
+            images.addAll(Arrays.asList(files));
+            Collections.sort(images);
+        }
+        return images;
+    }
+
+    /**
+     * Return the factor by which an image must be reduced to fit a box.
+     * 
+     * @param size       The size of the image.
+     * @param maxWidth   The largest width wanted.
+     * @param maxHeight  The largest height wanted.
+     * @return           The factor, at least 1.
+     */
+    public static int getSubsampling(Dimension size, int maxWidth, int maxHeight)
+    {
+        int factor = Math.max(ceilDiv(size.width, Math.max(1, maxWidth)),
+                              ceilDiv(size.height, Math.max(1, maxHeight)));
+        return Math.max(1, factor);
+    }
+
+    /**
+     * Decode (a part of) an image file, possibly subsampled, and count it
+     * in the operation metrics and the flight recorder.
+     * 
+     * @param imageFile    The image file to be loaded.
+     * @param region       The rectangle to load, or null for all of it.
+     * @param subsampling  The step between the rows and columns loaded.
+     * @return             The image object or null if it could not be read.
+     */
+    private static OFImage load(File imageFile, Rectangle region, int subsampling)
+    {
+        ImageEvents.LoadEvent event = new ImageEvents.LoadEvent();
+        event.begin();
+        OFImage image = OperationMetrics.getInstance().measure(
+            "Load", () -> decode(imageFile, region, subsampling),
+            loaded -> (long) loaded.getWidth() * loaded.getHeight());
+        if(event.shouldCommit()) {
+            event.file = imageFile.getPath();
+            if(image != null) {
+                event.setSize(image.getWidth(), image.getHeight());
+                event.bytes = imageFile.length() + 4L * image.getWidth() * image.getHeight();
+            }
+            event.commit();
+        }
+        return image;
+    }
+
+    /**
+     * Decode (a part of) an image file, possibly subsampled.
+     */
+    private static OFImage decode(File imageFile, Rectangle region, int subsampling)
+    {
+        try(ImageInputStream input = ImageIO.createImageInputStream(imageFile)) {
+            ImageReader reader = getReader(input);
+            if(reader == null) {
                 // we could not load the image - probably invalid file format
                 return null;
             }
-            return new OFImage(image);
+            try {
+                Rectangle bounds = new Rectangle(reader.getWidth(0), reader.getHeight(0));
+                Rectangle source = region == null ? bounds : region.intersection(bounds);
+                if(source.isEmpty()) {
+                    return null;
+                }
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceRegion(source);
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                if(decodesToPackedRGB(reader)) {
+                    // decode straight into the pixels of the result
+                    OFImage image = new OFImage(ceilDiv(source.width, subsampling),
+                                                ceilDiv(source.height, subsampling));
+                    param.setDestination(image);
+                    reader.read(0, param);
+                    return image;
+                }
+                return new OFImage(reader.read(0, param));
+            }
+            finally {
+                reader.dispose();
+            }
         }
         catch(IOException exc) {
             return null;
@@ -43,19 +263,185 @@ public class ImageFileManager
     }
 
     /**
-     * Write an image file to disk. The file format is JPG. In case of any 
-     * problem the method just silently returns.
+     * Return a reader for an image stream, with the stream set as its
+     * input, or null if there is none.
+     */
+    private static ImageReader getReader(ImageInputStream input)
+    {
+        if(input == null) {
+            return null;
+        }
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+        if(!readers.hasNext()) {
+            return null;
+        }
+        ImageReader reader = readers.next();
+        reader.setInput(input, true, true);
+        return reader;
+    }
+
+    /**
+     * Return whether a reader can decode its image into packed RGB ints,
+     * the format of OFImage.
+     */
+    private static boolean decodesToPackedRGB(ImageReader reader) throws IOException
+    {
+        Iterator<ImageTypeSpecifier> types = reader.getImageTypes(0);
+        while(types.hasNext()) {
+            if(types.next().getBufferedImageType() == BufferedImage.TYPE_INT_RGB) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Divide, rounding up.
+     */
+    private static int ceilDiv(int a, int b)
+    {
+        return (a + b - 1) / b;
+    }
+
+    /**
+     * Write an image file to disk, in the format that the file's extension
+     * names (JPG for an unknown extension), with the default settings.
      * 
      * @param image  The image to be saved.
      * @param file   The file to save to.
+     * @throws IOException  if the file could not be written.
+     */
+    public static void saveImage(OFImage image, File file) throws IOException
+    {
+        saveImage(image, file, ImageEncoding.DEFAULT);
+    }
+
+    /**
+     * Write an image file to disk, with a given encoding.
+     * 
+     * @param image     The image to be saved.
+     * @param file      The file to save to.
+     * @param encoding  The format and compression to use.
+     * @throws IOException  if the file could not be written, or there is
+     *                      no writer for the format.
+     */
+    public static void saveImage(OFImage image, File file, ImageEncoding encoding) 
+        throws IOException
+    {
+        String format = encoding.getFormat(file);
+        ImageEvents.SaveEvent event = new ImageEvents.SaveEvent();
+        event.begin();
+        OperationMetrics.getInstance().measure(
+            "Save " + format.toUpperCase(),
+            () -> {
+                write(image, file, format, encoding);
+                return image;
+            },
+            saved -> (long) saved.getWidth() * saved.getHeight());
+        if(event.shouldCommit()) {
+            event.file = file.getPath();
+            event.format = format;
+            event.setSize(image.getWidth(), image.getHeight());
+            event.bytes = 4L * image.getWidth() * image.getHeight() + file.length();
+            event.commit();
+        }
+    }
+
+    /**
+     * Write an image file in a given format, through a temporary file that
+     * replaces the file only when it is complete. A new file gets the
+     * default permissions, and a replaced file keeps its own. If the file
+     * is a symbolic link, the file it points to is replaced.
      */
-    public static void saveImage(OFImage image, File file)
+    private static void write(OFImage image, File file, String format, ImageEncoding encoding)
+        throws IOException
     {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format);
+        if(!writers.hasNext()) {
+            throw new IOException("Images cannot be written in the format " + format + ".");
+        }
+        ImageWriter writer = writers.next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        if(format.equals("jpg")) {
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(encoding.getJpegQuality());
+        }
+        else if(format.equals("png")) {
+            // the PNG writer uses the level 9 * (1 - quality), rounded down;
+            // a little less quality keeps float error from losing a level
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(
+                Math.max(0, (9 - encoding.getPngCompression()) / 9f - 0.01f));
+        }
+        Path target = file.toPath().toAbsolutePath();
+        boolean exists = Files.exists(target);
+        if(exists) {
+            // write to the file a link points to, not over the link
+            target = target.toRealPath();
+        }
+        // unlike Files.createTempFile, this leaves the default permissions
+        Path temp = File.createTempFile(".saving-", ".tmp", target.getParent().toFile())
+                        .toPath();
         try {
-            ImageIO.write(image, IMAGE_FORMAT, file);
+            try(FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE);
+                OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel),
+                                                            WRITE_BUFFER_SIZE);
+                ImageOutputStream output = new MemoryCacheImageOutputStream(out)) {
+                writer.setOutput(output);
+                writer.write(null, new IIOImage(image, null, null), param);
+            }
+            finally {
+                writer.dispose();
+            }
+            if(exists) {
+                copyPermissions(target, temp);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
         }
-        catch(IOException exc) {
-            return;
+        catch(IOException | RuntimeException exc) {
+            Files.deleteIfExists(temp);
+            throw exc;
         }
     }
+
+    /**
+     * Give a file the POSIX permissions of another, where the file system
+     * has them.
+     */
+    private static void copyPermissions(Path from, Path to) throws IOException
+    {
+        try {
+            Files.setPosixFilePermissions(to, Files.getPosixFilePermissions(from));
+        }
+        catch(UnsupportedOperationException exc) {
+            // not a POSIX file system: the file keeps its default permissions
+        }
+    }
+
+    /**
+     * Write an image file to disk in the background. The image must not be
+     * changed until the returned future is complete.
+     * 
+     * @param image     The image to be saved.
+     * @param file      The file to save to.
+     * @param encoding  The format and compression to use.
+     * @return  A future that gives the length of the file written, or
+     *          completes with the IOException if it could not be written.
+     */
+    public static CompletableFuture<Long> saveImageInBackground(OFImage image, File file,
+                                                                ImageEncoding encoding)
+    {
+        CompletableFuture<Long> result = new CompletableFuture<>();
+        encoder.execute(() -> {
+            try {
+                saveImage(image, file, encoding);
+                result.complete(file.length());
+            }
+            catch(IOException | RuntimeException exc) {
+                result.completeExceptionally(exc);
+            }
+        });
+        return result;
+    }
 }
@@ -0,0 +1,54 @@
+/**
+ * ImageOperation is an abstract superclass for all changes that can be made
+ * to the current image and undone again: filters, rotations and resizing.
+ * 
+ * An operation must always give the same result for the same image, so that
+ * the undo history can rebuild an image by applying the operations again.
+ * Operations that can be undone exactly say so by returning an inverse.
+ * 
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+public abstract class ImageOperation
+{
+    private String name;
+
+    /**
+     * Create a new operation with a given name.
+     * @param name The name of the operation.
+     */
+    public ImageOperation(String name)
+    {
+        this.name = name;
+    }
+
+    /**
+     * Return the name of this operation.
+     * 
+     * @return  The name of this operation.
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Apply this operation to an image. The operation may change the image
+     * it is given, or leave it alone and return a new one.
+     * 
+     * @param  image  The image to change.
+     * @return The changed image: either the same object or a new image.
+     */
+    public abstract OFImage apply(OFImage image);
+
+    /**
+     * Return an operation that exactly undoes this one, or null if there
+     * is none. The default is null.
+     * 
+     * @return  The inverse operation, or null.
+     */
+    public ImageOperation getInverse()
+    {
+        return null;
+    }
+}
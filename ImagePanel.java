@@ -1,6 +1,9 @@
 import java.awt.*;
+import java.awt.event.*;
 import javax.swing.*;
 import java.awt.image.*;
+import java.util.HashSet;
+import java.util.Set;
 
 /**
  * An ImagePanel is a Swing component that can display an OFImage.
@@ -8,18 +11,74 @@ import java.awt.image.*;
  * of setting an OFImage that will be displayed on the surface of this
  * component.
  * 
+ * The image can be shown zoomed in or out, without changing the image
+ * itself. The panel is meant to be placed in a JScrollPane: it only draws
+ * the part of the image that is visible, and it can be panned by dragging
+ * with the mouse and zoomed with the mouse wheel while holding Ctrl.
+ * 
+ * For drawing, the panel keeps a copy of the image in the format of the
+ * screen, which Java2D can keep in video memory. When a new image of the
+ * same size is set, only the tiles that differ from the old image are
+ * copied again and repainted. The time taken by recent repaints can be
+ * read with getPaintStatistics().
+ * 
+ * A panel can also show a TiledImage, which does not fit into memory. At
+ * actual size and above, the visible pixels are read from its tiles; when
+ * zoomed out, a reduced overview of the image is drawn. Overviews that are
+ * not ready yet are made in the background, and a coarser one is shown
+ * meanwhile.
+ * 
+ * @author Erik Cooke
+ * @version 2026.10.18
+ * Added zoom and pan, and a display copy with dirty-tile updates.
+ * 
  * @author Michael Kölling and David J. Barnes.
  * @version 1.0
  */
 public class ImagePanel extends JComponent
 {
-    // The current width and height of this panel
+    // The limits and the step of the zoom factor
+    private static final double MIN_ZOOM = 1.0 / 64;
+    private static final double MAX_ZOOM = 32;
+    private static final double ZOOM_STEP = 2;
+
+    // The size of the tiles in which changes are found and copied
+    private static final int TILE_SIZE = 64;
+    // Images larger than this (in pixels) are drawn without a display copy,
+    // to save memory
+    private static final long DISPLAY_COPY_LIMIT = 32L * 1024 * 1024;
+    // The number of recent repaints that the statistics cover
+    private static final int PAINT_HISTORY = 60;
+
+    // The current width and height of the image shown
     private int width, height;
 
+    // The display scale: 1 shows every image pixel as one screen pixel
+    private double zoom;
+
+    // Where a drag for panning started, in screen coordinates
+    private Point dragStart;
+
+    // The durations of the most recent repaints, in nanoseconds
+    private long[] paintTimes;
+    private int paintCount;
+
     // An internal image buffer that is used for painting. For
     // actual display, this image buffer is then copied to screen.
     private OFImage panelImage;
 
+    // A copy of panelImage in the format of the screen; or null
+    private BufferedImage displayImage;
+
+    // A tiled image shown instead of panelImage; or null
+    private TiledImage tiledImage;
+    // The overview factors of the tiled image being made in the background
+    private Set<Integer> pendingOverviews;
+
+    // A reduced image shown, stretched, instead of the image while the
+    // real image is being computed; or null.
+    private OFImage previewImage;
+
     /**
      * Create a new, empty ImagePanel.
      */
@@ -28,6 +87,37 @@ public class ImagePanel extends JComponent
         width = 360;    // arbitrary size for empty panel
         height = 240;
         panelImage = null;
+        zoom = 1;
+        paintTimes = new long[PAINT_HISTORY];
+        pendingOverviews = new HashSet<>();
+
+        MouseAdapter mouse = new MouseAdapter() {
+            public void mousePressed(MouseEvent e)
+            {
+                dragStart = e.getLocationOnScreen();
+            }
+
+            public void mouseDragged(MouseEvent e)
+            {
+                pan(e.getLocationOnScreen());
+            }
+
+            public void mouseWheelMoved(MouseWheelEvent e)
+            {
+                if(e.isControlDown()) {
+                    double step = e.getWheelRotation() < 0 ? ZOOM_STEP : 1 / ZOOM_STEP;
+                    zoomAround(zoom * step, e.getPoint());
+                }
+                else {
+                    // let the scroll pane scroll
+                    getParent().dispatchEvent(SwingUtilities.convertMouseEvent(
+                        ImagePanel.this, e, getParent()));
+                }
+            }
+        };
+        addMouseListener(mouse);
+        addMouseMotionListener(mouse);
+        addMouseWheelListener(mouse);
     }
 
     /**
@@ -38,9 +128,167 @@ public class ImagePanel extends JComponent
     public void setImage(OFImage image)
     {
         if(image != null) {
+            OFImage oldImage = panelImage;
+            boolean sameSize = oldImage != null && image.getWidth() == width
+                               && image.getHeight() == height;
             width = image.getWidth();
             height = image.getHeight();
             panelImage = image;
+            tiledImage = null;
+            if(previewImage != null) {
+                previewImage = null;
+                repaint();
+            }
+            if(sameSize && oldImage != image && displayImage != null) {
+                refreshChangedTiles(oldImage);
+            }
+            else {
+                displayImage = null;
+                repaint();
+            }
+        }
+    }
+
+    /**
+     * Set a tiled image that this panel should show, instead of an OFImage.
+     * 
+     * @param image  The tiled image to be displayed.
+     */
+    public void setTiledImage(TiledImage image)
+    {
+        width = image.getWidth();
+        height = image.getHeight();
+        tiledImage = image;
+        panelImage = null;
+        displayImage = null;
+        previewImage = null;
+        pendingOverviews.clear();
+        revalidate();
+        repaint();
+    }
+
+    /**
+     * Return the current zoom factor.
+     * 
+     * @return The zoom factor; 1 means actual size.
+     */
+    public double getZoom()
+    {
+        return zoom;
+    }
+
+    /**
+     * Set the zoom factor, keeping the middle of the visible area in place.
+     * 
+     * @param newZoom  The zoom factor; 1 means actual size. It is limited
+     *                 to the range from 1/64 to 32.
+     */
+    public void setZoom(double newZoom)
+    {
+        Rectangle visible = getVisibleRect();
+        zoomAround(newZoom, new Point(visible.x + visible.width / 2, 
+                                      visible.y + visible.height / 2));
+    }
+
+    /**
+     * Zoom in by one step.
+     */
+    public void zoomIn()
+    {
+        setZoom(zoom * ZOOM_STEP);
+    }
+
+    /**
+     * Zoom out by one step.
+     */
+    public void zoomOut()
+    {
+        setZoom(zoom / ZOOM_STEP);
+    }
+
+    /**
+     * Zoom so that the whole image fits into the visible area.
+     */
+    public void zoomToFit()
+    {
+        Dimension area = getParent() instanceof JViewport
+                         ? ((JViewport) getParent()).getExtentSize() : getSize();
+        if(area.width > 0 && area.height > 0) {
+            setZoom(Math.min((double) area.width / width, (double) area.height / height));
+        }
+    }
+
+    /**
+     * Change the zoom factor, keeping the image point under a given point
+     * of the panel in the same place on the screen.
+     * 
+     * @param newZoom  The new zoom factor.
+     * @param fixed  The point of the panel to keep in place.
+     */
+    private void zoomAround(double newZoom, Point fixed)
+    {
+        newZoom = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, newZoom));
+        if(newZoom == zoom) {
+            return;
+        }
+        double ratio = newZoom / zoom;
+        zoom = newZoom;
+        if(getParent() instanceof JViewport) {
+            JViewport viewport = (JViewport) getParent();
+            Point view = viewport.getViewPosition();
+            // lay out at once, so the viewport accepts the new position
+            setSize(getPreferredSize());
+            Dimension extent = viewport.getExtentSize();
+            int x = (int) Math.round(fixed.x * ratio) - (fixed.x - view.x);
+            int y = (int) Math.round(fixed.y * ratio) - (fixed.y - view.y);
+            x = Math.max(0, Math.min(x, getWidth() - extent.width));
+            y = Math.max(0, Math.min(y, getHeight() - extent.height));
+            viewport.setViewPosition(new Point(x, y));
+        }
+        revalidate();
+        repaint();
+    }
+
+    /**
+     * Move the visible area along with a mouse drag.
+     * 
+     * @param mouse  The position of the mouse on the screen.
+     */
+    private void pan(Point mouse)
+    {
+        if(dragStart == null || !(getParent() instanceof JViewport)) {
+            return;
+        }
+        JViewport viewport = (JViewport) getParent();
+        Point view = viewport.getViewPosition();
+        Dimension extent = viewport.getExtentSize();
+        int x = view.x - (mouse.x - dragStart.x);
+        int y = view.y - (mouse.y - dragStart.y);
+        x = Math.max(0, Math.min(x, getWidth() - extent.width));
+        y = Math.max(0, Math.min(y, getHeight() - extent.height));
+        viewport.setViewPosition(new Point(x, y));
+        dragStart = mouse;
+    }
+
+    /**
+     * Show a reduced preview of the image, stretched to the size of the
+     * image, until the next call of setImage() or clearPreview().
+     * 
+     * @param preview  The preview to be displayed.
+     */
+    public void setPreview(OFImage preview)
+    {
+        previewImage = preview;
+        repaint();
+    }
+
+    /**
+     * Stop showing the preview, and show the image again.
+     */
+    public void clearPreview()
+    {
+        if(previewImage != null) {
+            previewImage = null;
             repaint();
         }
     }
@@ -50,11 +298,144 @@ public class ImagePanel extends JComponent
      */
     public void clearImage()
     {
-        Graphics imageGraphics = panelImage.getGraphics();
-        imageGraphics.setColor(Color.LIGHT_GRAY);
-        imageGraphics.fillRect(0, 0, width, height);
+        if(tiledImage != null) {
+            tiledImage = null;
+        }
+        else {
+            // the image may be shared, so a gray one replaces it
+            panelImage = new OFImage(width, height);
+            Graphics imageGraphics = panelImage.getGraphics();
+            imageGraphics.setColor(Color.LIGHT_GRAY);
+            imageGraphics.fillRect(0, 0, width, height);
+        }
+        displayImage = null;
         repaint();
     }
+
+    /**
+     * Return a summary of the time taken by recent repaints.
+     * 
+     * @return  A text such as "Paint: 0.42 ms average, 1.10 ms max (60 frames)".
+     */
+    public String getPaintStatistics()
+    {
+        int frames = Math.min(paintCount, PAINT_HISTORY);
+        if(frames == 0) {
+            return "Paint: no frames yet";
+        }
+        long total = 0;
+        long max = 0;
+        for(int i = 0; i < frames; i++) {
+            total += paintTimes[i];
+            max = Math.max(max, paintTimes[i]);
+        }
+        return String.format("Paint: %.2f ms average, %.2f ms max (%d frames)",
+                             total / 1e6 / frames, max / 1e6, frames);
+    }
+
+    /**
+     * Compare the image with the one it replaces, tile by tile, and copy
+     * and repaint only the tiles that differ.
+     * 
+     * @param oldImage  The image shown before, of the same size.
+     */
+    private void refreshChangedTiles(OFImage oldImage)
+    {
+        int[] oldPixels = oldImage.getPixelData();
+        int[] newPixels = panelImage.getPixelData();
+        int tileRows = (height + TILE_SIZE - 1) / TILE_SIZE;
+        int tileColumns = (width + TILE_SIZE - 1) / TILE_SIZE;
+        boolean[] dirty = new boolean[tileRows * tileColumns];
+        FilterEngine.getDefault().forEachStrip(tileRows, width * TILE_SIZE, (startRow, endRow) -> {
+            for(int tileRow = startRow; tileRow < endRow; tileRow++) {
+                int bottom = Math.min(height, (tileRow + 1) * TILE_SIZE);
+                for(int y = tileRow * TILE_SIZE; y < bottom; y++) {
+                    for(int column = 0; column < tileColumns; column++) {
+                        int tile = tileRow * tileColumns + column;
+                        if(!dirty[tile]) {
+                            int from = y * width + column * TILE_SIZE;
+                            int to = y * width + Math.min(width, (column + 1) * TILE_SIZE);
+                            dirty[tile] = !rangeEquals(oldPixels, newPixels, from, to);
+                        }
+                    }
+                }
+            }
+        });
+        // join the dirty tiles of each tile row into runs
+        for(int tileRow = 0; tileRow < tileRows; tileRow++) {
+            int column = 0;
+            while(column < tileColumns) {
+                if(!dirty[tileRow * tileColumns + column]) {
+                    column++;
+                    continue;
+                }
+                int first = column;
+                while(column < tileColumns && dirty[tileRow * tileColumns + column]) {
+                    column++;
+                }
+                int x = first * TILE_SIZE;
+                int y = tileRow * TILE_SIZE;
+                refreshRegion(new Rectangle(x, y, Math.min(width, column * TILE_SIZE) - x,
+                                            Math.min(height, y + TILE_SIZE) - y));
+            }
+        }
+    }
+
+    /**
+     * Return whether two arrays hold the same values in a range.
+     */
+    private static boolean rangeEquals(int[] a, int[] b, int from, int to)
+    {
+        for(int i = from; i < to; i++) {
+            if(a[i] != b[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copy a region of the image to the display copy, and repaint it.
+     * 
+     * @param region  The region, in image coordinates.
+     */
+    private void refreshRegion(Rectangle region)
+    {
+        if(displayImage != null) {
+            copyToDisplay(region);
+        }
+        repaint((int) Math.floor(region.x * zoom), (int) Math.floor(region.y * zoom),
+                (int) Math.ceil(region.width * zoom) + 1, (int) Math.ceil(region.height * zoom) + 1);
+    }
+
+    /**
+     * Copy a region of the image into the display copy.
+     */
+    private void copyToDisplay(Rectangle region)
+    {
+        Graphics2D g = displayImage.createGraphics();
+        g.setComposite(AlphaComposite.Src);
+        g.drawImage(panelImage, region.x, region.y, region.x + region.width, 
+                    region.y + region.height, region.x, region.y, 
+                    region.x + region.width, region.y + region.height, null);
+        g.dispose();
+    }
+
+    /**
+     * Return the image to draw: the display copy, made if it is missing
+     * and worth making, or else the image itself.
+     */
+    private BufferedImage getDrawableImage()
+    {
+        if(displayImage == null && (long) width * height <= DISPLAY_COPY_LIMIT) {
+            GraphicsConfiguration configuration = getGraphicsConfiguration();
+            if(configuration != null) {
+                displayImage = configuration.createCompatibleImage(width, height);
+                copyToDisplay(new Rectangle(width, height));
+            }
+        }
+        return displayImage != null ? displayImage : panelImage;
+    }
     
     // The following methods are redefinitions of methods
     // inherited from superclasses.
@@ -68,7 +449,7 @@ public class ImagePanel extends JComponent
      */
     public Dimension getPreferredSize()
     {
-        return new Dimension(width, height);
+        return new Dimension((int) Math.ceil(width * zoom), (int) Math.ceil(height * zoom));
     }
     
     /**
@@ -76,14 +457,150 @@ public class ImagePanel extends JComponent
      * to screen. (This method gets called by the Swing screen painter 
      * every time it want this component displayed.)
      * 
+     * Only the part of the image inside the clip area is drawn, at the
+     * current zoom factor, so a huge image costs no more to draw than the
+     * part of it that is on the screen.
+     * 
      * @param g The graphics context that can be used to draw on this component.
      */
     public void paintComponent(Graphics g)
     {
-        Dimension size = getSize();
-        g.clearRect(0, 0, size.width, size.height);
-        if(panelImage != null) {
-            g.drawImage(panelImage, 0, 0, null);
+        long start = System.nanoTime();
+        ImageEvents.PaintEvent event = new ImageEvents.PaintEvent();
+        event.begin();
+        Rectangle clip = g.getClipBounds();
+        if(clip == null) {
+            clip = new Rectangle(getSize());
+        }
+        BufferedImage image = previewImage;
+        if(image == null && panelImage != null) {
+            image = getDrawableImage();
+        }
+        else if(image == null && tiledImage != null) {
+            if(getOverviewFactor() == 1) {
+                paintTiles(g, clip, event);
+                return;
+            }
+            image = getTiledOverview();
+        }
+        // the image is opaque, so only the area beside it needs clearing
+        Rectangle shown = new Rectangle(getPreferredSize());
+        if(image == null || !shown.contains(clip)) {
+            g.clearRect(clip.x, clip.y, clip.width, clip.height);
+        }
+        if(image == null) {
+            return;
+        }
+        // the scale from image pixels to panel pixels; a preview is
+        // smaller than the image it stands for
+        double scaleX = zoom * width / image.getWidth();
+        double scaleY = zoom * height / image.getHeight();
+        int sx1 = Math.max(0, (int) Math.floor(clip.x / scaleX));
+        int sy1 = Math.max(0, (int) Math.floor(clip.y / scaleY));
+        int sx2 = Math.min(image.getWidth(), (int) Math.ceil((clip.x + clip.width) / scaleX));
+        int sy2 = Math.min(image.getHeight(), (int) Math.ceil((clip.y + clip.height) / scaleY));
+        if(sx1 >= sx2 || sy1 >= sy2) {
+            return;
+        }
+        Graphics2D g2 = (Graphics2D) g;
+        g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                            scaleX < 1 ? RenderingHints.VALUE_INTERPOLATION_BILINEAR
+                                       : RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+        g2.drawImage(image,
+                     (int) Math.round(sx1 * scaleX), (int) Math.round(sy1 * scaleY),
+                     (int) Math.round(sx2 * scaleX), (int) Math.round(sy2 * scaleY),
+                     sx1, sy1, sx2, sy2, null);
+        recordPaint(start, event, sx2 - sx1, sy2 - sy1);
+    }
+
+    /**
+     * Draw the part of a tiled image inside the clip, read from its tiles.
+     */
+    private void paintTiles(Graphics g, Rectangle clip, ImageEvents.PaintEvent event)
+    {
+        long start = System.nanoTime();
+        int sx1 = Math.max(0, (int) Math.floor(clip.x / zoom));
+        int sy1 = Math.max(0, (int) Math.floor(clip.y / zoom));
+        int sx2 = Math.min(width, (int) Math.ceil((clip.x + clip.width) / zoom));
+        int sy2 = Math.min(height, (int) Math.ceil((clip.y + clip.height) / zoom));
+        if(!new Rectangle(getPreferredSize()).contains(clip)) {
+            g.clearRect(clip.x, clip.y, clip.width, clip.height);
+        }
+        if(sx1 >= sx2 || sy1 >= sy2) {
+            return;
+        }
+        OFImage part = tiledImage.getRegion(new Rectangle(sx1, sy1, sx2 - sx1, sy2 - sy1));
+        Graphics2D g2 = (Graphics2D) g;
+        g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                            zoom < 1 ? RenderingHints.VALUE_INTERPOLATION_BILINEAR
+                                     : RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+        g2.drawImage(part,
+                     (int) Math.round(sx1 * zoom), (int) Math.round(sy1 * zoom),
+                     (int) Math.round(sx2 * zoom), (int) Math.round(sy2 * zoom),
+                     0, 0, part.getWidth(), part.getHeight(), null);
+        event.tiled = true;
+        recordPaint(start, event, part.getWidth(), part.getHeight());
+    }
+
+    /**
+     * Return the factor by which the tiled image is reduced for display at
+     * the current zoom: the largest power of two not above 1 / zoom.
+     */
+    private int getOverviewFactor()
+    {
+        return zoom >= 1 ? 1 : Integer.highestOneBit((int) (1 / zoom));
+    }
+
+    /**
+     * Return the overview of the tiled image to draw at the current zoom.
+     * If it is not ready, start making it in the background, and return a
+     * coarser overview that is ready, or null if there is none.
+     */
+    private OFImage getTiledOverview()
+    {
+        TiledImage image = tiledImage;
+        int factor = getOverviewFactor();
+        OFImage overview = image.getCachedOverview(factor);
+        if(overview != null) {
+            return overview;
+        }
+        if(pendingOverviews.add(factor)) {
+            new SwingWorker<OFImage, Void>() {
+                protected OFImage doInBackground()
+                {
+                    return image.getOverview(factor);
+                }
+
+                protected void done()
+                {
+                    if(image == tiledImage) {
+                        pendingOverviews.remove(factor);
+                        repaint();
+                    }
+                }
+            }.execute();
+        }
+        for(int coarser = factor * 2; coarser / 2 < Math.max(width, height); coarser *= 2) {
+            overview = image.getCachedOverview(coarser);
+            if(overview != null) {
+                return overview;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Remember how long a repaint took, and record it for the flight
+     * recorder with the size of the part of the image drawn.
+     */
+    private void recordPaint(long start, ImageEvents.PaintEvent event, int width, int height)
+    {
+        paintTimes[paintCount % PAINT_HISTORY] = System.nanoTime() - start;
+        paintCount++;
+        if(event.shouldCommit()) {
+            event.setSize(width, height);
+            event.bytes = 4L * width * height;
+            event.commit();
         }
     }
 }
@@ -0,0 +1,412 @@
+import java.awt.Dimension;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An ImagePipeline loads, filters and saves many image files, with the
+ * three steps running at the same time on different files: while one file
+ * is filtered, the next is read from disk and the one before is written.
+ * So the disk and the processors can both be kept busy.
+ *
+ * Each step is a stage with its own threads. The stages are connected by
+ * queues of limited length. A stage that gets ahead waits when the queue to
+ * the next stage is full, so a slow stage holds back the ones before it
+ * instead of letting decoded images pile up. In addition, the images in
+ * the pipeline together may use at most a given amount of memory; an
+ * image waits to be loaded until there is enough free, and an image larger
+ * than the whole amount is let in on its own.
+ *
+ * Each result is written to the output folder under the name of its file,
+ * with the extension of the format it is written in. Files from different
+ * folders, or with different extensions, can come out with the same name;
+ * only the first of them is processed, and the others are reported as
+ * failed rather than overwriting its result.
+ *
+ * For each stage, the pipeline measures how busy its threads were and how
+ * long the queue in front of it was; see getStatistics().
+ *
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+public class ImagePipeline
+{
+    // the memory is counted in units of this many bytes
+    private static final long MEMORY_UNIT = 1024 * 1024;
+    // the bytes needed per pixel: the image, and the copy a filter may make
+    private static final int BYTES_PER_PIXEL = 8;
+    // put into a queue after the last file, to tell the stage to stop
+    private static final Job END = new Job(null, null);
+
+    private final Filter filter;
+    private final File outputFolder;
+    private final ImageEncoding encoding;
+    private final Listener listener;
+    private final int memoryUnits;
+    private final Semaphore memory;
+    private final Stage[] stages;
+    private final BlockingQueue<Job> input;
+    private long elapsed;
+
+    /**
+     * A Listener is told about each file when it is done, on the thread of
+     * the last stage it went through, or, for a file whose result would
+     * have the name of another's, on the thread that called process().
+     */
+    public interface Listener
+    {
+        /**
+         * A file has been saved.
+         * @param file The input file.
+         * @param size The size of the image.
+         * @param nanos The time taken by each stage, in nanoseconds.
+         */
+        void fileDone(File file, Dimension size, long[] nanos);
+
+        /**
+         * A file could not be processed.
+         * @param file The input file.
+         * @param reason What went wrong.
+         */
+        void fileFailed(File file, String reason);
+    }
+
+    /**
+     * Create an image pipeline.
+     * @param filter The filter to apply to each file.
+     * @param outputFolder The folder to write the results to.
+     * @param encoding How to write the results. If it has no format, each
+     *                 result is written in the format of its input file.
+     * @param ioThreads The number of threads that load files, and also the
+     *                  number that save files.
+     * @param filterThreads The number of threads that filter images.
+     * @param queueLength The number of images that may wait between two
+     *                    stages.
+     * @param memoryLimit The number of bytes the images in the pipeline
+     *                    may use together.
+     * @param listener Told about each file when it is done.
+     */
+    public ImagePipeline(Filter filter, File outputFolder, ImageEncoding encoding,
+                         int ioThreads, int filterThreads, int queueLength, long memoryLimit,
+                         Listener listener)
+    {
+        if(ioThreads < 1 || filterThreads < 1 || queueLength < 1) {
+            throw new IllegalArgumentException("threads and queue length must be at least 1");
+        }
+        this.filter = filter;
+        this.outputFolder = outputFolder;
+        this.encoding = encoding;
+        this.listener = listener;
+        memoryUnits = (int) Math.max(1, Math.min(Integer.MAX_VALUE, memoryLimit / MEMORY_UNIT));
+        memory = new Semaphore(memoryUnits, true);
+        input = new ArrayBlockingQueue<>(queueLength);
+        BlockingQueue<Job> decoded = new ArrayBlockingQueue<>(queueLength);
+        BlockingQueue<Job> filtered = new ArrayBlockingQueue<>(queueLength);
+        stages = new Stage[] {
+            new Stage(0, "load", ioThreads, input, decoded, this::load),
+            new Stage(1, "filter", filterThreads, decoded, filtered, this::filter),
+            new Stage(2, "save", ioThreads, filtered, null, this::save),
+        };
+    }
+
+    /**
+     * Process files, and return when all are done. The calling thread
+     * feeds the files into the pipeline, and waits when it is full.
+     * @param files The image files to process.
+     * @throws InterruptedException if interrupted while feeding or
+     *         waiting.
+     */
+    public void process(List<File> files) throws InterruptedException
+    {
+        outputFolder.mkdirs();
+        long start = System.nanoTime();
+        List<ExecutorService> executors = new ArrayList<>();
+        for(Stage stage : stages) {
+            executors.add(stage.start());
+        }
+        // the input file of each result name
+        Map<String, File> outputs = new HashMap<>();
+        for(File file : files) {
+            String name = getOutputName(file);
+            File first = outputs.putIfAbsent(name, file);
+            if(first != null) {
+                listener.fileFailed(file, "its result " + name + " would overwrite that of "
+                                          + first.getPath());
+                continue;
+            }
+            stages[0].enqueue(input, new Job(file, new File(outputFolder, name)));
+        }
+        input.put(END);
+        for(ExecutorService executor : executors) {
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+        elapsed = System.nanoTime() - start;
+    }
+
+    /**
+     * Return, for each stage, how busy its threads were and how many images
+     * waited in the queue in front of it, on average and at most.
+     * @return The statistics, one line per stage.
+     */
+    public String getStatistics()
+    {
+        StringBuilder text = new StringBuilder();
+        for(Stage stage : stages) {
+            text.append(stage.getStatistics(elapsed)).append(System.lineSeparator());
+        }
+        return text.toString();
+    }
+
+    /**
+     * @return The time the last process() took, in nanoseconds.
+     */
+    public long getElapsedNanos()
+    {
+        return elapsed;
+    }
+
+    /**
+     * The load stage: once there is memory for the image, decode it.
+     */
+    private boolean load(Job job)
+    {
+        job.size = ImageFileManager.getImageSize(job.file);
+        if(job.size == null) {
+            listener.fileFailed(job.file, "not a recognized image file");
+            return false;
+        }
+        long bytes = (long) BYTES_PER_PIXEL * job.size.width * job.size.height;
+        job.memoryUnits = (int) Math.max(1, Math.min(memoryUnits,
+                                                     (bytes + MEMORY_UNIT - 1) / MEMORY_UNIT));
+        long start = System.nanoTime();
+        memory.acquireUninterruptibly(job.memoryUnits);
+        job.waited = System.nanoTime() - start;
+        job.image = ImageFileManager.loadImage(job.file);
+        if(job.image == null) {
+            fail(job, "could not be read");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * The filter stage.
+     */
+    private boolean filter(Job job)
+    {
+        ImageEvents.applyFilter(filter, job.image);
+        return true;
+    }
+
+    /**
+     * The save stage: write the image, and give its memory back.
+     */
+    private boolean save(Job job)
+    {
+        try {
+            ImageFileManager.saveImage(job.image, job.output, encoding);
+        }
+        catch(IOException exc) {
+            fail(job, "could not be written: " + exc.getMessage());
+            return false;
+        }
+        job.image = null;
+        memory.release(job.memoryUnits);
+        return true;
+    }
+
+    /**
+     * Report a file that failed, and give its memory back.
+     */
+    private void fail(Job job, String reason)
+    {
+        job.image = null;
+        memory.release(job.memoryUnits);
+        listener.fileFailed(job.file, reason);
+    }
+
+    /**
+     * Return the name of the result of a file: its name, with the extension
+     * of the format it is written in.
+     */
+    private String getOutputName(File file)
+    {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        return (dot > 0 ? name.substring(0, dot) : name) + "." + encoding.getFormat(file);
+    }
+
+    /**
+     * A Job is one file on its way through the pipeline.
+     */
+    private static class Job
+    {
+        private final File file;
+        // the file the result is written to
+        private final File output;
+        private Dimension size;
+        private OFImage image;
+        private int memoryUnits;
+        // the time spent waiting for memory, which is not work
+        private long waited;
+        // the time each stage took
+        private final long[] nanos;
+
+        Job(File file, File output)
+        {
+            this.file = file;
+            this.output = output;
+            nanos = new long[3];
+        }
+    }
+
+    /**
+     * The work of a stage on one job.
+     */
+    private interface Step
+    {
+        /**
+         * Do the work.
+         * @return true to pass the job on, false if it failed and has been
+         *         reported.
+         */
+        boolean run(Job job);
+    }
+
+    /**
+     * A Stage is one step of the pipeline, with its threads, the queue it
+     * takes jobs from, and the queue it passes them on to.
+     */
+    private class Stage
+    {
+        private final String name;
+        private final int threads;
+        private final BlockingQueue<Job> from;
+        private final BlockingQueue<Job> to;
+        private final Step step;
+        private final int index;
+        // the threads still running
+        private final AtomicInteger running;
+        private final AtomicLong busyNanos;
+        // the length of the queue in front, each time a job was put into it
+        private final AtomicLong depthSum;
+        private final AtomicLong depthSamples;
+        private final AtomicInteger maxDepth;
+
+        Stage(int index, String name, int threads, BlockingQueue<Job> from, BlockingQueue<Job> to,
+              Step step)
+        {
+            this.index = index;
+            this.name = name;
+            this.threads = threads;
+            this.from = from;
+            this.to = to;
+            this.step = step;
+            running = new AtomicInteger(threads);
+            busyNanos = new AtomicLong();
+            depthSum = new AtomicLong();
+            depthSamples = new AtomicLong();
+            maxDepth = new AtomicInteger();
+        }
+
+        /**
+         * Start the threads of this stage.
+         * @return The executor they run on.
+         */
+        ExecutorService start()
+        {
+            ExecutorService executor = Executors.newFixedThreadPool(threads, task -> {
+                Thread thread = new Thread(task, "pipeline " + name);
+                thread.setDaemon(true);
+                return thread;
+            });
+            for(int i = 0; i < threads; i++) {
+                executor.execute(this::work);
+            }
+            return executor;
+        }
+
+        /**
+         * Put a job into the queue in front of this stage, waiting while it
+         * is full, and note the queue's length.
+         */
+        void enqueue(BlockingQueue<Job> queue, Job job) throws InterruptedException
+        {
+            queue.put(job);
+            int depth = queue.size();
+            depthSum.addAndGet(depth);
+            depthSamples.incrementAndGet();
+            maxDepth.accumulateAndGet(depth, Math::max);
+        }
+
+        /**
+         * Take jobs and work on them until the end of the files. The last
+         * thread to stop tells the next stage to stop.
+         */
+        private void work()
+        {
+            Stage next = to == null ? null : stages[index + 1];
+            try {
+                while(true) {
+                    Job job = from.take();
+                    if(job == END) {
+                        from.put(END);  // for the other threads of this stage
+                        break;
+                    }
+                    long start = System.nanoTime();
+                    boolean passOn;
+                    try {
+                        passOn = step.run(job);
+                    }
+                    catch(RuntimeException | OutOfMemoryError exc) {
+                        fail(job, exc.toString());
+                        passOn = false;
+                    }
+                    long nanos = System.nanoTime() - start - job.waited;
+                    job.waited = 0;
+                    job.nanos[index] = nanos;
+                    busyNanos.addAndGet(nanos);
+                    if(passOn && next != null) {
+                        next.enqueue(to, job);
+                    }
+                    else if(passOn) {
+                        listener.fileDone(job.file, job.size, job.nanos);
+                    }
+                }
+                if(running.decrementAndGet() == 0) {
+                    from.clear();
+                    if(to != null) {
+                        to.put(END);
+                    }
+                }
+            }
+            catch(InterruptedException exc) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Return how busy this stage was, and how long its queue was.
+         */
+        String getStatistics(long elapsed)
+        {
+            long samples = Math.max(1, depthSamples.get());
+            return String.format("%s: %d threads, %.0f%% busy, queue %.1f on average, %d at most",
+                                 name, threads,
+                                 100.0 * busyNanos.get() / Math.max(1, elapsed * threads),
+                                 (double) depthSum.get() / samples, maxDepth.get());
+        }
+    }
+}
@@ -5,11 +5,24 @@ import javax.swing.*;
 import javax.swing.border.*;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.Stack;
+import java.util.Collections;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 
 /**
  * ImageViewer is the main class of the image viewer application. It builds and
@@ -29,25 +42,71 @@ public class ImageViewer
     // static fields:
     private static final String VERSION = "Version 3.1";
     private static JFileChooser fileChooser = new JFileChooser(System.getProperty("user.dir"));
+    // images with more pixels than this are first loaded at reduced size,
+    // to fit into a square of REDUCED_LOAD_SIZE
+    private static final long LARGE_IMAGE_PIXELS = 40_000_000;
+    private static final int REDUCED_LOAD_SIZE = 2000;
+    // the step between rows and columns of the images loadForViewing()
+    // loaded at reduced size, found while loading them in the background
+    private static final Map<OFImage, Integer> reducedImages =
+        Collections.synchronizedMap(new WeakHashMap<>());
 
     // fields:
     private JFrame frame;
     private ImagePanel imagePanel;
     private JLabel filenameLabel;
     private JLabel statusLabel;
+    private JProgressBar progressBar;
+    private ThumbnailStrip thumbnailStrip;
+    private JScrollPane thumbnailPane;
+    // the options of the Save As dialog
+    private JPanel encodingPanel;
+    private JSlider jpegQualitySlider;
+    private JSpinner pngCompressionSpinner;
+    private JButton cancelButton;
     private JButton smallerButton;
     private JButton largerButton;
     private JButton undoButton;
+    private JButton redoButton;
     private JButton rotateRight;
     private JButton rotateLeft;
     private OFImage currentImage;
     private JMenuItem undoItem;
+    private JMenuItem redoItem;
     private JMenuItem rotateRightMenu;
     private JMenuItem rotateLeftMenu;
+    private JMenuItem resizeMenu;
+    private JMenuItem fullResolutionItem;
+    
+    // the file of the current image, and the step between the rows and
+    // columns of the file that were loaded (1 for the full image)
+    private File currentFile;
+    private int currentSubsampling;
     
     private List<Filter> filters;
     
-    private Stack<OFImage> undoStack;
+    private UndoHistory undoHistory;
+    private PreviewCache previewCache;
+
+    // decoded images of files, shown again without decoding, and the file
+    // being loaded to be shown next, if any
+    private ImageCache imageCache;
+    private File requestedFile;
+    
+    // shows the paint times in the status bar while it runs
+    private Timer paintTimesTimer;
+    
+    // the operation running in the background, and those waiting for it
+    private OperationWorker runningWorker;
+    private Deque<OperationWorker> waitingWorkers;
+    // what to do once the running operation has stopped
+    private Deque<Runnable> afterStop;
+
+    // an image too large for the heap, shown instead of currentImage, the
+    // version before its last change, and the work running on it
+    private TiledImage tiledImage;
+    private TiledImage previousTiledImage;
+    private TaskMonitor tiledMonitor;
     
     /**
      * Create an ImageViewer and display its GUI on screen.
@@ -55,8 +114,14 @@ public class ImageViewer
     public ImageViewer()
     {
         currentImage = null;
-        undoStack = new Stack<OFImage>();
-        filters = createFilters();
+        undoHistory = new UndoHistory();
+        OperationMetrics.getInstance().setUndoHistory(undoHistory);
+        waitingWorkers = new ArrayDeque<>();
+        afterStop = new ArrayDeque<>();
+        previewCache = new PreviewCache();
+        imageCache = new ImageCache(Runtime.getRuntime().maxMemory() / 8,
+                                    ImageViewer::loadForViewing);
+        filters = FilterChain.createFilters();
         makeFrame();
     }
 
@@ -74,22 +139,470 @@ public class ImageViewer
         if(returnVal != JFileChooser.APPROVE_OPTION) {
             return;  // cancelled
         }
-        File selectedFile = fileChooser.getSelectedFile();
-        currentImage = ImageFileManager.loadImage(selectedFile);
-        
-        if(currentImage == null) {   // image file was not a valid image
-            JOptionPane.showMessageDialog(frame,
-                    "The file was not in a recognized image file format.",
-                    "Image Load Error",
-                    JOptionPane.ERROR_MESSAGE);
+        openImage(fileChooser.getSelectedFile());
+    }
+
+    /**
+     * Open function for the folder: show the next image in the folder of
+     * the current image, in the order of the file names.
+     */
+    private void showNextImage()
+    {
+        stepThroughFolder(1);
+    }
+
+    /**
+     * Open function for the folder: show the previous image in the folder
+     * of the current image, in the order of the file names.
+     */
+    private void showPreviousImage()
+    {
+        stepThroughFolder(-1);
+    }
+
+    /**
+     * Load an image file and display it.
+     * 
+     * @param file  The image file to open.
+     */
+    private void openImage(File file)
+    {
+        openImage(file, 0);
+    }
+
+    /**
+     * Load an image file and display it. Very large images are loaded at
+     * reduced size; the full image can then be loaded with the Load Full
+     * Resolution function.
+     * 
+     * Images come from the image cache, so an image that was shown or
+     * prefetched before appears at once. Others are decoded in the
+     * background. Once the image is shown, its neighbours in the folder
+     * are prefetched.
+     * 
+     * @param file  The image file to open.
+     * @param direction  1 or -1 if the user is stepping forward or back
+     *                   through the folder, 0 otherwise.
+     */
+    private void openImage(File file, int direction)
+    {
+        requestedFile = file;
+        CompletableFuture<OFImage> loading = imageCache.get(file);
+        if(!loading.isDone()) {
+            showStatus("Loading " + file.getName() + "...");
+        }
+        loading.whenComplete((image, exc) -> SwingUtilities.invokeLater(() -> {
+            if(file != requestedFile) {
+                return;  // the user has moved on to another file
+            }
+            requestedFile = null;
+            if(exc != null) {
+                JOptionPane.showMessageDialog(frame,
+                        "The image could not be loaded: " + exc,
+                        "Image Load Error",
+                        JOptionPane.ERROR_MESSAGE);
+            }
+            else if(image == null) {   // image file was not a valid image
+                JOptionPane.showMessageDialog(frame,
+                        "The file was not in a recognized image file format.",
+                        "Image Load Error",
+                        JOptionPane.ERROR_MESSAGE);
+            }
+            else {
+                showLoadedImage(file, image, reducedImages.getOrDefault(image, 1));
+                imageCache.prefetch(getNeighbours(file, direction));
+            }
+        }));
+    }
+
+    /**
+     * Decode an image file the way it is first shown: very large images at
+     * reduced size, others in full. The step of a reduced image is noted
+     * in reducedImages, so that it need not be found on the event thread.
+     * 
+     * @param file  The image file.
+     * @return  The image, or null if the file could not be read.
+     */
+    private static OFImage loadForViewing(File file)
+    {
+        Dimension size = ImageFileManager.getImageSize(file);
+        if(size == null) {
+            return null;
+        }
+        int subsampling = getViewSubsampling(size);
+        if(subsampling == 1) {
+            return ImageFileManager.loadImage(file);
+        }
+        OFImage image = ImageFileManager.loadRegion(file, new Rectangle(size), subsampling);
+        if(image != null) {
+            reducedImages.put(image, subsampling);
+        }
+        return image;
+    }
+
+    /**
+     * Return the step between the rows and columns loaded when an image of
+     * a given size is first shown.
+     * 
+     * @param size  The size of the image, or null if it is not known.
+     * @return  1 for a full image, more for a very large one.
+     */
+    private static int getViewSubsampling(Dimension size)
+    {
+        if(size == null || (long) size.width * size.height <= LARGE_IMAGE_PIXELS) {
+            return 1;
+        }
+        return ImageFileManager.getSubsampling(size, REDUCED_LOAD_SIZE, REDUCED_LOAD_SIZE);
+    }
+
+    /**
+     * Open the image next to the current one in its folder.
+     * 
+     * @param direction  1 for the next image, -1 for the previous one.
+     */
+    private void stepThroughFolder(int direction)
+    {
+        // while an image is loading, step on from that one
+        File from = requestedFile != null ? requestedFile : currentFile;
+        if(from == null) {
+            showStatus("No image loaded.");
+            return;
+        }
+        List<File> folder = getFolderImages(from);
+        int index = Collections.binarySearch(folder, from.getAbsoluteFile());
+        if(index < 0) {
+            // the file is gone; step from where it was
+            index = -index - 1;
+            index = direction > 0 ? index : index - 1;
+        }
+        else {
+            index += direction;
+        }
+        if(index < 0 || index >= folder.size()) {
+            showStatus(direction > 0 ? "This is the last image in the folder." 
+                                     : "This is the first image in the folder.");
             return;
         }
+        openImage(folder.get(index), direction);
+    }
+
+    /**
+     * Return the images to prefetch around a file: the next ones in the
+     * direction the user is stepping, and the one just behind.
+     * 
+     * @param file  The image file shown.
+     * @param direction  1 or -1 if the user is stepping forward or back
+     *                   through the folder, 0 otherwise.
+     * @return  The files to prefetch.
+     */
+    private List<File> getNeighbours(File file, int direction)
+    {
+        List<File> folder = getFolderImages(file);
+        int index = Collections.binarySearch(folder, file.getAbsoluteFile());
+        List<File> neighbours = new ArrayList<>();
+        if(index < 0) {
+            return neighbours;
+        }
+        int ahead = direction < 0 ? -1 : 1;
+        for(int i : new int[] { index + ahead, index - ahead, index + 2 * ahead }) {
+            if(i >= 0 && i < folder.size()) {
+                neighbours.add(folder.get(i));
+            }
+        }
+        return neighbours;
+    }
+
+    /**
+     * Return the image files in the folder of a file, sorted by name.
+     * 
+     * @param file  A file in the folder.
+     * @return  The image files, with absolute paths.
+     */
+    private static List<File> getFolderImages(File file)
+    {
+        return ImageFileManager.listImageFiles(file.getAbsoluteFile().getParentFile());
+    }
+
+    /**
+     * Make a freshly loaded image the current image, and display it.
+     * 
+     * @param file  The file the image was loaded from.
+     * @param image  The image.
+     * @param subsampling  The step between the rows and columns loaded.
+     */
+    private void showLoadedImage(File file, OFImage image, int subsampling)
+    {
+        if(stopOperations(() -> showLoadedImage(file, image, subsampling))) {
+            return;
+        }
+        closeTiledImages();
+        undoHistory.clear();
+        updateUndoItems();
+        previewCache.clear();
+        currentImage = image;
+        currentFile = file;
+        currentSubsampling = subsampling;
+        fullResolutionItem.setEnabled(subsampling > 1);
 
         imagePanel.setImage(currentImage);
         setButtonsEnabled(true);
-        showFilename(selectedFile.getPath());
-        showStatus("File loaded.");
-        frame.pack();
+        showFilename(file.getPath());
+        thumbnailStrip.setDirectory(file.getAbsoluteFile().getParentFile());
+        thumbnailStrip.setSelectedFile(file);
+        if(subsampling > 1) {
+            showStatus("File loaded at 1/" + subsampling + " size. "
+                       + "Use File > Load Full Resolution for all pixels.");
+        }
+        else {
+            showStatus("File loaded.");
+        }
+        packFrame();
+    }
+
+    /**
+     * Load Full Resolution function: load all pixels of an image that was
+     * loaded at reduced size. Loading happens in the background; changes
+     * made to the reduced image are discarded.
+     */
+    private void loadFullResolution()
+    {
+        if(currentFile == null || currentSubsampling == 1) {
+            return;
+        }
+        if(undoHistory.canUndo()) {
+            int answer = JOptionPane.showConfirmDialog(frame,
+                    "Loading the full resolution discards the changes made so far.",
+                    "Load Full Resolution",
+                    JOptionPane.OK_CANCEL_OPTION);
+            if(answer != JOptionPane.OK_OPTION) {
+                return;
+            }
+        }
+        cancelOperations();
+        File file = currentFile;
+        fullResolutionItem.setEnabled(false);
+        showStatus("Loading full resolution...");
+        progressBar.setIndeterminate(true);
+        progressBar.setString("Loading");
+        progressBar.setVisible(true);
+        new SwingWorker<OFImage, Void>() {
+            // the size of an image too large for the heap, or null
+            private Dimension tooLarge;
+
+            protected OFImage doInBackground()
+            {
+                Dimension size = ImageFileManager.getImageSize(file);
+                if(size != null
+                   && 4L * size.width * size.height > Runtime.getRuntime().maxMemory() / 4) {
+                    tooLarge = size;
+                    return null;
+                }
+                return ImageFileManager.loadImage(file);
+            }
+
+            protected void done()
+            {
+                progressBar.setIndeterminate(false);
+                progressBar.setVisible(runningWorker != null);
+                if(tooLarge != null) {
+                    if(file.equals(currentFile)) {
+                        loadTiled(file, tooLarge);
+                    }
+                    return;
+                }
+                OFImage image;
+                try {
+                    image = get();
+                }
+                catch(InterruptedException | ExecutionException exc) {
+                    image = null;   // for example, out of memory
+                }
+                if(!file.equals(currentFile)) {
+                    return;  // another image was opened in the meantime
+                }
+                if(image != null) {
+                    showLoadedImage(file, image, 1);
+                }
+                else {
+                    fullResolutionItem.setEnabled(true);
+                    showStatus("The full resolution could not be loaded.");
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * Load all pixels of an image that is too large for the heap into a
+     * tiled image, backed by a scratch file, and display it. Loading
+     * happens in the background.
+     * 
+     * @param file  The image file to load.
+     * @param size  The size of the image.
+     */
+    private void loadTiled(File file, Dimension size)
+    {
+        // an overview about the size of the reduced image, to show at first
+        int factor = Integer.highestOneBit(
+                ImageFileManager.getSubsampling(size, REDUCED_LOAD_SIZE, REDUCED_LOAD_SIZE));
+        runTiled("Loading", () -> {
+            TiledImage image = TiledImage.load(file);
+            if(image != null) {
+                image.getOverview(factor);
+            }
+            return image;
+        }, image -> {
+            if(image == null || !file.equals(currentFile)) {
+                if(image != null) {
+                    image.close();  // another image was opened in the meantime
+                }
+                else {
+                    fullResolutionItem.setEnabled(true);
+                    showStatus("The full resolution could not be loaded.");
+                }
+                return;
+            }
+            showTiledImage(image);
+        });
+    }
+
+    /**
+     * Make a freshly loaded tiled image the image shown. Only filters that
+     * can be applied tile by tile work on it, and only the last change can
+     * be undone.
+     * 
+     * @param image  The tiled image.
+     */
+    private void showTiledImage(TiledImage image)
+    {
+        if(stopOperations(() -> showTiledImage(image))) {
+            return;
+        }
+        undoHistory.clear();
+        previewCache.clear();
+        currentImage = null;
+        tiledImage = image;
+        currentSubsampling = 1;
+        imagePanel.setTiledImage(image);
+        setButtonsEnabled(false);
+        updateUndoItems();
+        packFrame();
+        imagePanel.zoomToFit();
+        showStatus("Full resolution loaded from a scratch file, tile by tile. "
+                   + "Filters that need the whole image are not available.");
+    }
+
+    /**
+     * Apply a filter to the tiled image, in the background. The image
+     * before the change is kept, so that the change can be undone.
+     * 
+     * @param filter  The filter to apply.
+     */
+    private void applyTiledFilter(Filter filter)
+    {
+        if(filter.getHalo() < 0) {
+            showStatus(filter.getName() + " cannot be applied to an image this large.");
+            return;
+        }
+        TiledImage source = tiledImage;
+        runTiled(filter.getName(), () -> source.apply(filter), result -> {
+            if(source != tiledImage) {
+                result.close();
+                return;
+            }
+            if(previousTiledImage != null) {
+                previousTiledImage.close();
+            }
+            // kept only for undo, so its tiles need not stay in the heap
+            source.releaseCache();
+            previousTiledImage = source;
+            tiledImage = result;
+            imagePanel.setTiledImage(result);
+            updateUndoItems();
+            showStatus("Applied: " + filter.getName());
+        });
+    }
+
+    /**
+     * Run work on a tiled image in the background, showing its progress,
+     * and hand the result to the event thread. Only one such work runs at
+     * a time.
+     * 
+     * @param name  The name of the work, for the progress bar.
+     * @param work  The work to do.
+     * @param done  What to do with the result, on the event thread.
+     */
+    private void runTiled(String name, Callable<TiledImage> work, Consumer<TiledImage> done)
+    {
+        if(tiledMonitor != null) {
+            showStatus("Please wait until " + progressBar.getString() + " is done.");
+            return;
+        }
+        TaskMonitor monitor = new TaskMonitor((pass, worked, total) -> {
+            int percent = total == 0 ? 100 : (int) (100 * worked / total);
+            SwingUtilities.invokeLater(() -> progressBar.setValue(percent));
+        });
+        tiledMonitor = monitor;
+        progressBar.setValue(0);
+        progressBar.setString(name);
+        progressBar.setVisible(true);
+        cancelButton.setVisible(true);
+        new SwingWorker<TiledImage, Void>() {
+            protected TiledImage doInBackground()
+            {
+                return monitor.run(() -> {
+                    try {
+                        return work.call();
+                    }
+                    catch(IOException exc) {
+                        throw new UncheckedIOException(exc);
+                    }
+                    catch(Exception exc) {
+                        throw new IllegalStateException(exc);
+                    }
+                });
+            }
+
+            protected void done()
+            {
+                tiledMonitor = null;
+                progressBar.setVisible(false);
+                cancelButton.setVisible(false);
+                try {
+                    done.accept(get());
+                }
+                catch(InterruptedException exc) {
+                    Thread.currentThread().interrupt();
+                }
+                catch(ExecutionException exc) {
+                    Throwable cause = exc.getCause();
+                    if(cause instanceof CancellationException || monitor.isCancelled()) {
+                        // the image may have been closed under the work
+                        showStatus("Cancelled: " + name);
+                    }
+                    else {
+                        JOptionPane.showMessageDialog(frame,
+                                name + " failed: " + cause,
+                                "Operation Error",
+                                JOptionPane.ERROR_MESSAGE);
+                    }
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * Stop using the tiled images, and delete their scratch files.
+     */
+    private void closeTiledImages()
+    {
+        if(tiledImage != null) {
+            tiledImage.close();
+            tiledImage = null;
+        }
+        if(previousTiledImage != null) {
+            previousTiledImage.close();
+            previousTiledImage = null;
+        }
     }
 
     /**
@@ -97,29 +610,63 @@ public class ImageViewer
      */
     private void close()
     {
-        currentImage = null;
+        requestedFile = null;
+        thumbnailStrip.setSelectedFile(null);
+        if(stopOperations(() -> close())) {
+            return;
+        }
         imagePanel.clearImage();
+        closeTiledImages();
+        currentFile = null;
+        fullResolutionItem.setEnabled(false);
+        previewCache.clear();
+        currentImage = null;
         showFilename(null);
         setButtonsEnabled(false);
-        undoStack.clear();
-        setUndoItemEnabled(false);
+        undoHistory.clear();
+        updateUndoItems();
     }
 
     /**
-     * Save As function: save the current image to a file.
+     * Save As function: save the current image to a file, in the format
+     * its extension names, at the JPEG quality and PNG compression chosen
+     * in the dialog. The file is written in the background.
      */
     private void saveAs()
     {
-        if(currentImage != null) {
+        if(tiledImage != null) {
+            showStatus("Images this large cannot be saved.");
+        }
+        else if(currentImage != null) {
+            fileChooser.setAccessory(encodingPanel);
             int returnVal = fileChooser.showSaveDialog(frame);
+            fileChooser.setAccessory(null);
     
             if(returnVal != JFileChooser.APPROVE_OPTION) {
                 return;  // cancelled
             }
             File selectedFile = fileChooser.getSelectedFile();
-            ImageFileManager.saveImage(currentImage, selectedFile);
-            
-            showFilename(selectedFile.getPath());
+            ImageEncoding encoding = ImageEncoding.DEFAULT
+                .withJpegQuality(jpegQualitySlider.getValue() / 100f)
+                .withPngCompression((Integer) pngCompressionSpinner.getValue());
+            showStatus("Saving " + selectedFile.getName() + "...");
+            long start = System.nanoTime();
+            ImageFileManager.saveImageInBackground(currentImage, selectedFile, encoding)
+                .whenComplete((length, exc) -> SwingUtilities.invokeLater(() -> {
+                    if(exc != null) {
+                        showStatus("Not saved.");
+                        JOptionPane.showMessageDialog(frame,
+                                "The image could not be saved: " + exc.getMessage(),
+                                "Image Save Error",
+                                JOptionPane.ERROR_MESSAGE);
+                        return;
+                    }
+                    showFilename(selectedFile.getPath());
+                    showStatus(String.format("Saved as %s: %d KB in %d ms.",
+                                             encoding.getFormat(selectedFile).toUpperCase(),
+                                             (length + 1023) / 1024,
+                                             (System.nanoTime() - start) / 1_000_000));
+                }));
         }
     }
 
@@ -138,21 +685,72 @@ public class ImageViewer
      */
     private void applyFilter(Filter filter)
     {
-        if(currentImage != null) {
-            // add currentImage to undoStack before making a change.
-            OFImage tempImage = new OFImage(currentImage);
-            undoStack.push(tempImage);
-            setUndoItemEnabled(true);
-            
-            filter.apply(currentImage);
-            frame.repaint();
-            showStatus("Applied: " + filter.getName());
+        if(tiledImage != null) {
+            applyTiledFilter(filter);
+        }
+        else if(currentImage != null) {
+            showPreview(filter);
+            perform(new FilterOperation(filter));
         }
         else {
             showStatus("No image loaded.");
         }
     }
 
+    /**
+     * Show at once what a filter will do, by applying it to a reduced copy
+     * of the current image that fits the image as shown on the screen,
+     * at the current zoom. The preview stays
+     * until the real result is ready. Nothing is shown while other
+     * operations are running, since the preview would not include them.
+     * 
+     * @param filter   The filter to preview.
+     */
+    private void showPreview(Filter filter)
+    {
+        if(runningWorker != null) {
+            return;
+        }
+        Dimension shown = imagePanel.getPreferredSize();
+        Dimension screen = Toolkit.getDefaultToolkit().getScreenSize();
+        OFImage proxy = previewCache.getProxy(currentImage,
+                                              Math.min(shown.width, screen.width),
+                                              Math.min(shown.height, screen.height));
+        if(proxy != null) {
+            OFImage preview = new OFImage(proxy);
+            ImageEvents.applyFilter(filter, preview);
+            imagePanel.setPreview(preview);
+        }
+    }
+
+    /**
+     * Apply a chain of filters to the current image, in a single step. The
+     * user types the names of the filters, separated by commas.
+     */
+    private void applyFilterChain()
+    {
+        if(currentImage == null && tiledImage == null) {
+            showStatus("No image loaded.");
+            return;
+        }
+        String names = JOptionPane.showInputDialog(frame,
+                    "Filters to apply, separated by commas:",
+                    "Apply Filter Chain",
+                    JOptionPane.PLAIN_MESSAGE);
+        if(names == null) {
+            return;  // cancelled
+        }
+        try {
+            applyFilter(FilterChain.fromNames(names, filters));
+        }
+        catch(IllegalArgumentException exc) {
+            JOptionPane.showMessageDialog(frame,
+                    exc.getMessage(),
+                    "Filter Chain Error",
+                    JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
     /**
      * 'About' function: show the 'about' box.
      */
@@ -169,31 +767,7 @@ public class ImageViewer
      */
     private void makeLarger()
     {
-        if(currentImage != null) {
-            // add currentImage to undoStack before making a change.
-            undoStack.push(currentImage);
-            setUndoItemEnabled(true);
-            
-            // create new image with double size
-            int width = currentImage.getWidth();
-            int height = currentImage.getHeight();
-            OFImage newImage = new OFImage(width * 2, height * 2);
-
-            // copy pixel data into new image
-            for(int y = 0; y < height; y++) {
-                for(int x = 0; x < width; x++) {
-                    Color col = currentImage.getPixel(x, y);
-                    newImage.setPixel(x * 2, y * 2, col);
-                    newImage.setPixel(x * 2 + 1, y * 2, col);
-                    newImage.setPixel(x * 2, y * 2 + 1, col);
-                    newImage.setPixel(x * 2+1, y * 2 + 1, col);
-                }
-            }
-            
-            currentImage = newImage;
-            imagePanel.setImage(currentImage);
-            frame.pack();
-        }
+        perform(new ScaleOperation(true));
     }
     
 
@@ -202,54 +776,49 @@ public class ImageViewer
      */
     private void makeSmaller()
     {
-        if(currentImage != null) {
-            // add currentImage to undoStack before making a change.
-            undoStack.push(currentImage);
-            setUndoItemEnabled(true);
-            
-            // create new image with double size
-            int width = currentImage.getWidth() / 2;
-            int height = currentImage.getHeight() / 2;
-            OFImage newImage = new OFImage(width, height);
-
-            // copy pixel data into new image
-            for(int y = 0; y < height; y++) {
-                for(int x = 0; x < width; x++) {
-                    newImage.setPixel(x, y, currentImage.getPixel(x * 2, y * 2));
-                }
-            }
-            
-            currentImage = newImage;
-            imagePanel.setImage(currentImage);
-            frame.pack();
-        }
+        perform(new ScaleOperation(false));
     }
     
+    /**
+     * Resize the current picture to a width and height the user chooses,
+     * with a choice of resampling kernel.
+     */
+    private void resize()
+    {
+        if(currentImage == null) {
+            showStatus("No image loaded.");
+            return;
+        }
+        JSpinner widthSpinner = new JSpinner(
+            new SpinnerNumberModel(currentImage.getWidth(), 1, 65536, 1));
+        JSpinner heightSpinner = new JSpinner(
+            new SpinnerNumberModel(currentImage.getHeight(), 1, 65536, 1));
+        JComboBox<Resampler.Kernel> kernelBox = new JComboBox<>(Resampler.Kernel.values());
+        kernelBox.setSelectedItem(Resampler.Kernel.BICUBIC);
+        JPanel panel = new JPanel(new GridLayout(0, 2, 6, 4));
+        panel.add(new JLabel("Width:"));
+        panel.add(widthSpinner);
+        panel.add(new JLabel("Height:"));
+        panel.add(heightSpinner);
+        panel.add(new JLabel("Resampling:"));
+        panel.add(kernelBox);
+        int answer = JOptionPane.showConfirmDialog(frame, panel, "Resize",
+                                                   JOptionPane.OK_CANCEL_OPTION,
+                                                   JOptionPane.PLAIN_MESSAGE);
+        if(answer != JOptionPane.OK_OPTION) {
+            return;  // cancelled
+        }
+        perform(new ScaleOperation((Integer) widthSpinner.getValue(),
+                                   (Integer) heightSpinner.getValue(),
+                                   (Resampler.Kernel) kernelBox.getSelectedItem()));
+    }
+
     /**
      * Rotates current image 90 degrees to the right
      */
     private void rotateRight()
     {
-        if(currentImage != null)
-        {
-            // add currentImage to undoStack before making a change.
-            undoStack.push(currentImage);
-            setUndoItemEnabled(true);
-            
-            int width = currentImage.getWidth();
-            int height = currentImage.getHeight();
-            OFImage original = new OFImage(height, width);
-            for(int y = 0; y < height; y++)
-            {
-                for(int x = 0; x < width; x++)
-                {
-                    original.setPixel(height - 1 - y, x, currentImage.getPixel(x, y));
-                }
-            }
-            currentImage = original;
-            imagePanel.setImage(currentImage);
-            frame.pack();
-        }
+        perform(new RotateOperation(true));
     }
     
     /**
@@ -257,25 +826,22 @@ public class ImageViewer
      */
     private void rotateLeft()
     {
-        if(currentImage != null)
-        {
-            // add currentImage to undoStack before making a change.
-            undoStack.push(currentImage);
-            setUndoItemEnabled(true);
-            
-            int width = currentImage.getWidth();
-            int height = currentImage.getHeight();
-            OFImage original = new OFImage(height, width);
-            for(int y = 0; y < height; y++)
-            {
-                for(int x = 0; x < width; x++)
-                {
-                    original.setPixel(y, width - 1 - x, currentImage.getPixel(x, y));
-                }
-            }
-            currentImage = original;
-            imagePanel.setImage(currentImage);
-            frame.pack();
+        perform(new RotateOperation(false));
+    }
+
+    /**
+     * Apply an operation to the current image and record it in the undo
+     * history. The operation runs in the background.
+     * 
+     * @param operation The operation to apply.
+     */
+    private void perform(ImageOperation operation)
+    {
+        if(currentImage != null) {
+            String message = operation instanceof FilterOperation
+                             ? "Applied: " + operation.getName() : null;
+            submit(new OperationWorker(operation.getName(), message,
+                                       image -> undoHistory.perform(operation, image)));
         }
     }
         
@@ -284,17 +850,70 @@ public class ImageViewer
      */
     private void undo()
     {
-        if(!undoStack.empty())
-        {
-            currentImage = undoStack.pop();
-            if(undoStack.empty())
-            {
-                setUndoItemEnabled(false);
+        if(tiledImage != null) {
+            if(previousTiledImage != null && tiledMonitor == null) {
+                tiledImage.close();
+                tiledImage = previousTiledImage;
+                previousTiledImage = null;
+                imagePanel.setTiledImage(tiledImage);
+                updateUndoItems();
             }
-            imagePanel.setImage(currentImage);
-            frame.pack();
+        }
+        else if(undoHistory.canUndo() || runningWorker != null)
+        {
+            submit(new OperationWorker("Undo", null, image ->
+                undoHistory.canUndo() ? undoHistory.undo(image) : image));
         }
     }    
+
+    /**
+     * Loads the image as it was before the latest undo.
+     */
+    private void redo()
+    {
+        if(undoHistory.canRedo() || runningWorker != null)
+        {
+            submit(new OperationWorker("Redo", null, image ->
+                undoHistory.canRedo() ? undoHistory.redo(image) : image));
+        }
+    }
+
+    /**
+     * Cancel function: stop the operation that is running, and forget the
+     * ones that are waiting. The current image stays as it was.
+     */
+    private void cancelOperations()
+    {
+        waitingWorkers.clear();
+        if(runningWorker != null) {
+            runningWorker.cancelWork();
+        }
+        if(tiledMonitor != null) {
+            tiledMonitor.cancel();
+        }
+    }
+
+    /**
+     * Cancel all operations before the current image is replaced, so that
+     * nothing changes the undo history any more. If an operation is still
+     * running, it may take a while to notice the cancel, and the event
+     * thread does not wait for it: the replacing is done again once the
+     * operation has been handed over, and its result is dropped.
+     * 
+     * @param retry  What to do once the running operation has stopped.
+     * @return  true if an operation is still running, so the caller must
+     *          leave the replacing to retry.
+     */
+    private boolean stopOperations(Runnable retry)
+    {
+        cancelOperations();
+        if(runningWorker == null) {
+            return false;
+        }
+        afterStop.addLast(retry);
+        showStatus("Stopping: " + runningWorker.getName() + "...");
+        return true;
+    }
     
     // ---- support methods ----
 
@@ -336,52 +955,241 @@ public class ImageViewer
         rotateRight.setEnabled(status);
         rotateLeft.setEnabled(status);
         rotateLeftMenu.setEnabled(status);
-        rotateRightMenu.setEnabled(status);        
+        rotateRightMenu.setEnabled(status);
+        resizeMenu.setEnabled(status);        
     }
     
     /**
-     * Enable or disable the undo menu item
-     * @param status 'true' to enable, 'false' to disable undo menu item.
+     * Run an operation in the background, or queue it if another one is
+     * still running, so that operations happen one at a time and in the
+     * order they were asked for.
+     * 
+     * @param worker The worker that runs the operation.
+     */
+    private void submit(OperationWorker worker)
+    {
+        if(runningWorker == null) {
+            startWorker(worker);
+        }
+        else {
+            waitingWorkers.addLast(worker);
+            showStatus("Queued: " + worker.getName() + " (" + waitingWorkers.size() 
+                       + " waiting)");
+        }
+    }
+
+    /**
+     * Start running an operation in the background.
+     * 
+     * @param worker The worker that runs the operation.
      */
-    private void setUndoItemEnabled(boolean status)
+    private void startWorker(OperationWorker worker)
     {
-        undoItem.setEnabled(status);
-        undoButton.setEnabled(status);
+        runningWorker = worker;
+        progressBar.setValue(0);
+        progressBar.setString(worker.getName());
+        progressBar.setVisible(true);
+        cancelButton.setVisible(true);
+        worker.start(currentImage);
     }
-    
-    
+
     /**
-     * Create a list with all the known filters.
-     * @return The list of filters.
-     */
-    private List<Filter> createFilters()
-    {
-        List<Filter> filterList = new ArrayList<>();
-        filterList.add(new DarkerFilter("Darker"));
-        filterList.add(new LighterFilter("Lighter"));
-        filterList.add(new ThresholdFilter("Threshold"));
-        filterList.add(new InvertFilter("Invert"));
-        filterList.add(new SolarizeFilter("Solarize"));
-        filterList.add(new SmoothFilter("Smooth"));
-        filterList.add(new PixelizeFilter("Pixelize"));
-        filterList.add(new MirrorFilter("Mirror"));
-        filterList.add(new GrayScaleFilter("Grayscale"));
-        filterList.add(new EdgeFilter("Edge Detection"));
-        filterList.add(new FishEyeFilter("Fish Eye"));
-        filterList.add(new RedChannel("Red Channel"));
-        filterList.add(new GreenChannel("Green Channel"));
-        filterList.add(new BlueChannel("Blue Channel"));
-        filterList.add(new RedTint("Red Tint"));
-        filterList.add(new GreenTint("Green Tint"));
-        filterList.add(new BlueTint("Blue Tint"));
-        filterList.add(new WarholChannel("Warhol Channel"));
-        filterList.add(new WarholFlippedChannel("Warhol Flipped Channel"));
-        filterList.add(new WarholTint("Warhol Tint"));
-        filterList.add(new WarholFlippedTint("Warhol Flipped Tint"));
-       
-        return filterList;
+     * Take the result of an operation that has finished, and start the
+     * next one, if any is waiting.
+     * 
+     * @param worker The worker that has finished.
+     */
+    private void workerDone(OperationWorker worker)
+    {
+        runningWorker = null;
+        imagePanel.clearPreview();
+        if(!afterStop.isEmpty()) {
+            // the image is being replaced: drop the result, even one that
+            // changed the undo history, which is cleared anyway
+            waitingWorkers.clear();
+            progressBar.setVisible(false);
+            cancelButton.setVisible(false);
+            showStatus("Cancelled: " + worker.getName());
+            while(!afterStop.isEmpty()) {
+                afterStop.removeFirst().run();
+            }
+            updateUndoItems();
+            return;
+        }
+        try {
+            if(currentImage == null || worker.getSource() != currentImage) {
+                // the image was closed, or another one opened, while the
+                // operation ran: the result belongs to an image that is gone
+                showStatus("Cancelled: " + worker.getName());
+            }
+            else {
+                showResult(worker, worker.get());
+            }
+        }
+        catch(InterruptedException exc) {
+            Thread.currentThread().interrupt();
+        }
+        catch(ExecutionException exc) {
+            Throwable cause = exc.getCause();
+            if(cause instanceof CancellationException && worker.getCompletedImage() != null) {
+                // the cancel came after the operation had changed the undo
+                // history, so the image must change to match it
+                showResult(worker, worker.getCompletedImage());
+            }
+            else if(cause instanceof CancellationException) {
+                showStatus("Cancelled: " + worker.getName());
+            }
+            else if(cause instanceof UncheckedIOException) {
+                showUndoError();
+            }
+            else {
+                JOptionPane.showMessageDialog(frame,
+                        worker.getName() + " failed: " + cause,
+                        "Operation Error",
+                        JOptionPane.ERROR_MESSAGE);
+            }
+        }
+        updateUndoItems();
+        if(!waitingWorkers.isEmpty()) {
+            startWorker(waitingWorkers.removeFirst());
+        }
+        else {
+            waitingWorkers.clear();
+            progressBar.setVisible(false);
+            cancelButton.setVisible(false);
+        }
+    }
+
+    /**
+     * Make the result of an operation the current image.
+     * 
+     * @param worker The worker that ran the operation.
+     * @param result The new image.
+     */
+    private void showResult(OperationWorker worker, OFImage result)
+    {
+        if(result.getWidth() == currentImage.getWidth() 
+           && result.getHeight() == currentImage.getHeight()) {
+            // same size: no need to lay out the frame again
+            currentImage = result;
+            imagePanel.setImage(currentImage);
+        }
+        else {
+            showImage(result);
+        }
+        String message = worker.getMessage() != null ? worker.getMessage() : worker.getName();
+        showStatus(message + " (" + worker.getTime() + ")");
+    }
+
+    /**
+     * Show the progress of the running operation.
+     * 
+     * @param worker The worker that reports.
+     * @param pass The pass of the operation.
+     * @param percent How much of the pass is done, in percent.
+     */
+    private void showProgress(OperationWorker worker, int pass, int percent)
+    {
+        if(worker == runningWorker) {
+            progressBar.setValue(percent);
+            progressBar.setString(pass > 1 ? worker.getName() + " (pass " + pass + ")"
+                                           : worker.getName());
+        }
+    }
+
+    /**
+     * Make a given image the current image and display it.
+     * @param image The new current image.
+     */
+    private void showImage(OFImage image)
+    {
+        currentImage = image;
+        imagePanel.setImage(currentImage);
+        packFrame();
+    }
+
+    /**
+     * Size the frame to fit the image at the current zoom, but no larger
+     * than the screen; the rest of the image can then be scrolled to.
+     */
+    private void packFrame()
+    {
+        frame.pack();
+        Rectangle screen = GraphicsEnvironment.getLocalGraphicsEnvironment()
+                                              .getMaximumWindowBounds();
+        if(frame.getWidth() > screen.width || frame.getHeight() > screen.height) {
+            frame.setSize(Math.min(frame.getWidth(), screen.width),
+                          Math.min(frame.getHeight(), screen.height));
+            frame.setLocation(screen.x, screen.y);
+        }
+    }
+
+    /**
+     * Show the zoom of the image display in the status bar.
+     */
+    private void showZoom()
+    {
+        showStatus("Zoom: " + Math.round(imagePanel.getZoom() * 100) + "%");
+    }
+
+    /**
+     * Show or hide the thumbnails of the folder of the current image.
+     * 
+     * @param show  'true' to show the thumbnails, 'false' to hide them.
+     */
+    private void showThumbnails(boolean show)
+    {
+        thumbnailPane.setVisible(show);
+        frame.revalidate();
+    }
+
+    /**
+     * Start or stop showing the time that repainting the image takes, in
+     * the status bar, once a second.
+     * 
+     * @param show  'true' to start showing the times, 'false' to stop.
+     */
+    private void showPaintTimes(boolean show)
+    {
+        if(paintTimesTimer == null) {
+            paintTimesTimer = new Timer(1000, e -> showStatus(imagePanel.getPaintStatistics()));
+        }
+        if(show) {
+            paintTimesTimer.start();
+        }
+        else {
+            paintTimesTimer.stop();
+        }
+    }
+
+    /**
+     * Tell the user that an earlier version of the image could not be
+     * read back.
+     */
+    private void showUndoError()
+    {
+        JOptionPane.showMessageDialog(frame,
+                "The earlier version of the image could not be read back.",
+                "Undo Error",
+                JOptionPane.ERROR_MESSAGE);
+    }
+
+    /**
+     * Enable or disable the undo and redo menu items and buttons,
+     * depending on what the undo history holds.
+     */
+    private void updateUndoItems()
+    {
+        boolean canUndo = tiledImage != null ? previousTiledImage != null 
+                                             : undoHistory.canUndo();
+        boolean canRedo = undoHistory.canRedo();
+        undoItem.setEnabled(canUndo);
+        undoButton.setEnabled(canUndo);
+        redoItem.setEnabled(canRedo);
+        redoButton.setEnabled(canRedo);
     }
     
+    
     // ---- Swing stuff to build the frame and all its components and menus ----
     
     /**
@@ -400,15 +1208,40 @@ public class ImageViewer
         
         // Create the image pane in the center
         imagePanel = new ImagePanel();
-        imagePanel.setBorder(new EtchedBorder());
-        contentPane.add(imagePanel, BorderLayout.CENTER);
+        JScrollPane scrollPane = new JScrollPane(imagePanel);
+        scrollPane.setBorder(new EtchedBorder());
+        contentPane.add(scrollPane, BorderLayout.CENTER);
 
         // Create two labels at top and bottom for the file name and status messages
         filenameLabel = new JLabel();
         contentPane.add(filenameLabel, BorderLayout.NORTH);
 
         statusLabel = new JLabel(VERSION);
-        contentPane.add(statusLabel, BorderLayout.SOUTH);
+
+        // the status area also shows the progress of a running operation
+        JPanel statusPanel = new JPanel(new BorderLayout(6, 0));
+        statusPanel.add(statusLabel, BorderLayout.CENTER);
+        JPanel progressPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 6, 0));
+        progressBar = new JProgressBar(0, 100);
+        progressBar.setStringPainted(true);
+        progressBar.setVisible(false);
+        progressPanel.add(progressBar);
+        cancelButton = new JButton("Cancel");
+        cancelButton.addActionListener(e -> cancelOperations());
+        cancelButton.setVisible(false);
+        progressPanel.add(cancelButton);
+        statusPanel.add(progressPanel, BorderLayout.EAST);
+
+        // the thumbnails of the folder go above the status area
+        thumbnailStrip = new ThumbnailStrip(file -> openImage(file));
+        thumbnailPane = new JScrollPane(thumbnailStrip,
+                                        JScrollPane.VERTICAL_SCROLLBAR_NEVER,
+                                        JScrollPane.HORIZONTAL_SCROLLBAR_AS_NEEDED);
+        thumbnailPane.setBorder(new EtchedBorder());
+        JPanel bottomPanel = new JPanel(new BorderLayout(6, 6));
+        bottomPanel.add(thumbnailPane, BorderLayout.CENTER);
+        bottomPanel.add(statusPanel, BorderLayout.SOUTH);
+        contentPane.add(bottomPanel, BorderLayout.SOUTH);
         
         // Create the toolbar with the buttons
         JPanel toolbar = new JPanel();
@@ -434,16 +1267,34 @@ public class ImageViewer
         undoButton.addActionListener(e -> undo());
         toolbar.add(undoButton);
 
+        redoButton = new JButton("Redo");
+        redoButton.addActionListener(e -> redo());
+        toolbar.add(redoButton);
+
         // Add toolbar into panel with flow layout for spacing
         JPanel flow = new JPanel();
         flow.add(toolbar);
         
         contentPane.add(flow, BorderLayout.WEST);
         
+        // the options shown in the Save As dialog
+        encodingPanel = new JPanel(new GridLayout(0, 1, 0, 4));
+        encodingPanel.setBorder(new TitledBorder("Compression"));
+        encodingPanel.add(new JLabel("JPEG quality (%):"));
+        jpegQualitySlider = new JSlider(0, 100,
+                                        Math.round(ImageEncoding.DEFAULT_JPEG_QUALITY * 100));
+        jpegQualitySlider.setMajorTickSpacing(25);
+        jpegQualitySlider.setPaintLabels(true);
+        encodingPanel.add(jpegQualitySlider);
+        encodingPanel.add(new JLabel("PNG compression (0-9):"));
+        pngCompressionSpinner = new JSpinner(
+            new SpinnerNumberModel(ImageEncoding.DEFAULT_PNG_COMPRESSION, 0, 9, 1));
+        encodingPanel.add(pngCompressionSpinner);
+
         // building is done - arrange the components      
         showFilename(null);
         setButtonsEnabled(false);
-        setUndoItemEnabled(false);
+        updateUndoItems();
         frame.pack();
         
         // place the frame at the center of the screen and show
@@ -483,6 +1334,23 @@ public class ImageViewer
         menu.add(item);
         menu.addSeparator();
 
+        item = new JMenuItem("Previous Image");
+            item.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_LEFT, SHORTCUT_MASK));
+            item.addActionListener(e -> showPreviousImage());
+        menu.add(item);
+
+        item = new JMenuItem("Next Image");
+            item.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_RIGHT, SHORTCUT_MASK));
+            item.addActionListener(e -> showNextImage());
+        menu.add(item);
+        menu.addSeparator();
+
+        fullResolutionItem = new JMenuItem("Load Full Resolution");
+            fullResolutionItem.addActionListener(e -> loadFullResolution());
+            fullResolutionItem.setEnabled(false);
+        menu.add(fullResolutionItem);
+        menu.addSeparator();
+
         item = new JMenuItem("Save As...");
             item.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_S, SHORTCUT_MASK));
             item.addActionListener(e -> saveAs());
@@ -505,6 +1373,10 @@ public class ImageViewer
         rotateLeftMenu = new JMenuItem("Rotate Left");
             rotateLeftMenu.addActionListener(e -> rotateLeft());
         menu.add(rotateLeftMenu);
+
+        resizeMenu = new JMenuItem("Resize...");
+            resizeMenu.addActionListener(e -> resize());
+        menu.add(resizeMenu);
         
         menu.addSeparator();
         undoItem = new JMenuItem("Undo");
@@ -512,6 +1384,43 @@ public class ImageViewer
             undoItem.addActionListener(e -> undo());
         menu.add(undoItem);
 
+        redoItem = new JMenuItem("Redo");
+            redoItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Y, SHORTCUT_MASK));
+            redoItem.addActionListener(e -> redo());
+        menu.add(redoItem);
+
+        // create the View menu
+        menu = new JMenu("View");
+        menubar.add(menu);
+        
+        item = new JMenuItem("Zoom In");
+            item.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_EQUALS, SHORTCUT_MASK));
+            item.addActionListener(e -> { imagePanel.zoomIn(); showZoom(); });
+        menu.add(item);
+
+        item = new JMenuItem("Zoom Out");
+            item.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_MINUS, SHORTCUT_MASK));
+            item.addActionListener(e -> { imagePanel.zoomOut(); showZoom(); });
+        menu.add(item);
+
+        item = new JMenuItem("Actual Size");
+            item.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_0, SHORTCUT_MASK));
+            item.addActionListener(e -> { imagePanel.setZoom(1); showZoom(); });
+        menu.add(item);
+
+        item = new JMenuItem("Fit in Window");
+            item.addActionListener(e -> { imagePanel.zoomToFit(); showZoom(); });
+        menu.add(item);
+        menu.addSeparator();
+
+        JCheckBoxMenuItem thumbnailsItem = new JCheckBoxMenuItem("Show Thumbnails", true);
+            thumbnailsItem.addActionListener(e -> showThumbnails(thumbnailsItem.isSelected()));
+        menu.add(thumbnailsItem);
+
+        JCheckBoxMenuItem paintTimesItem = new JCheckBoxMenuItem("Show Paint Times");
+            paintTimesItem.addActionListener(e -> showPaintTimes(paintTimesItem.isSelected()));
+        menu.add(paintTimesItem);
+
         // create the Filter menu
         menu = new JMenu("Filter");
         menubar.add(menu);
@@ -521,6 +1430,11 @@ public class ImageViewer
             item.addActionListener(e -> applyFilter(filter));
              menu.add(item);
          }
+        menu.addSeparator();
+
+        item = new JMenuItem("Apply Filter Chain...");
+            item.addActionListener(e -> applyFilterChain());
+        menu.add(item);
 
         // create the Help menu
         menu = new JMenu("Help");
@@ -531,4 +1445,118 @@ public class ImageViewer
         menu.add(item);
 
     }
+
+    /**
+     * An OperationWorker runs one operation on a copy of the current image,
+     * on a background thread. The copy is only shown when the operation has
+     * finished, so a cancelled operation leaves the current image as it was.
+     */
+    private class OperationWorker extends SwingWorker<OFImage, Void>
+    {
+        private String name;
+        private String message;
+        private UnaryOperator<OFImage> work;
+        private TaskMonitor monitor;
+        private OFImage image;
+        // the last progress shown, as pass * 1000 + percent
+        private AtomicInteger shown;
+        private long nanos;
+        // the result, once the work has got to its end
+        private volatile OFImage completed;
+
+        /**
+         * Create a worker.
+         * @param name The name of the operation.
+         * @param message The status message when done, or null.
+         * @param work The work: it gets a copy of the image that it may
+         *             change, and returns the new image.
+         */
+        OperationWorker(String name, String message, UnaryOperator<OFImage> work)
+        {
+            this.name = name;
+            this.message = message;
+            this.work = work;
+            shown = new AtomicInteger(-1);
+            monitor = new TaskMonitor((pass, done, total) -> {
+                int percent = total == 0 ? 100 : (int) (100 * done / total);
+                int progress = pass * 1000 + percent;
+                // only bother the event thread when the display changes
+                if(shown.getAndSet(progress) != progress) {
+                    SwingUtilities.invokeLater(() -> showProgress(this, pass, percent));
+                }
+            });
+        }
+
+        /**
+         * Start the work on an image.
+         * @param image The current image. It is not changed.
+         */
+        void start(OFImage image)
+        {
+            this.image = image;
+            execute();
+        }
+
+        /**
+         * Ask the work to stop.
+         */
+        void cancelWork()
+        {
+            monitor.cancel();
+        }
+
+        String getName()
+        {
+            return name;
+        }
+
+        String getMessage()
+        {
+            return message;
+        }
+
+        /**
+         * Return the image the work started from, or null if it has not
+         * been started.
+         */
+        OFImage getSource()
+        {
+            return image;
+        }
+
+        /**
+         * Return the result of the work if it got to its end, even if it
+         * was cancelled just after, or null.
+         */
+        OFImage getCompletedImage()
+        {
+            return completed;
+        }
+
+        /**
+         * Return how long the work took, with its rate of pixels, as text.
+         */
+        String getTime()
+        {
+            return OperationMetrics.formatTime(nanos, (long) image.getWidth() * image.getHeight());
+        }
+
+        protected OFImage doInBackground()
+        {
+            long start = System.nanoTime();
+            try {
+                return monitor.run(() -> OperationMetrics.getInstance().measure(
+                    name, () -> completed = work.apply(new OFImage(image)),
+                    done -> (long) image.getWidth() * image.getHeight()));
+            }
+            finally {
+                nanos = System.nanoTime() - start;
+            }
+        }
+
+        protected void done()
+        {
+            workerDone(this);
+        }
+    }
 }
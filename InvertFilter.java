@@ -1,12 +1,10 @@
-import java.awt.Color;
-
 /**
  * An image filter to invert colors.
  * 
  * @author Michael Kölling and David J. Barnes.
  * @version 1.0
  */
-public class InvertFilter extends Filter
+public class InvertFilter extends PointFilter
 {
     /**
      * Constructor for objects of class InvertFilter.
@@ -18,21 +16,24 @@ public class InvertFilter extends Filter
     }
 
     /**
-     * Apply this filter to an image.
+     * Create the color transform of this filter: every channel value v
+     * becomes 255 - v.
+     * 
+     * @return The transform that this filter applies to every pixel.
+     */
+    protected ColorTransform createTransform()
+    {
+        int[] table = ColorTransform.table(value -> 255 - value);
+        return ColorTransform.fromTables(table, table, table);
+    }
+
+    /**
+     * This filter is undone by inverting the colors again.
      * 
-     * @param  image  The image to be changed by this filter.
+     * @return This filter.
      */
-    public void apply(OFImage image)
+    public Filter getInverse()
     {
-        int height = image.getHeight();
-        int width = image.getWidth();
-        for(int y = 0; y < height; y++) {
-            for(int x = 0; x < width; x++) {
-                Color pix = image.getPixel(x, y);
-                image.setPixel(x, y, new Color(255 - pix.getRed(),
-                                               255 - pix.getGreen(),
-                                               255 - pix.getBlue()));
-            }
-        }
+        return this;
     }
 }
@@ -4,8 +4,13 @@
  * @author Michael Kölling and David J. Barnes.
  * @version 1.0
  */
-public class LighterFilter extends Filter
+public class LighterFilter extends PointFilter
 {
+    // the same scale factor that Color.brighter() uses
+    private static final double FACTOR = 0.7;
+    // the smallest channel value that still grows when scaled by FACTOR
+    private static final int MINIMUM = (int)(1.0 / (1.0 - FACTOR));
+
 	/**
 	 * Constructor for objects of class LighterFilter.
      * @param name The name of the filter.
@@ -16,19 +21,31 @@ public class LighterFilter extends Filter
 	}
 
     /**
-     * Apply this filter to an image.
+     * Create the color transform of this filter: every channel is scaled
+     * up like Color.brighter() does.
      * 
-     * @param  image  The image to be changed by this filter.
+     * @return The transform that this filter applies to every pixel.
+     */
+    protected ColorTransform createTransform()
+    {
+        int[] table = ColorTransform.table(LighterFilter::brighter);
+        // Color.brighter() turns pure black into a dark gray
+        return ColorTransform.fromTables(table, table, table)
+                             .withBlackResult(OFImage.packRGB(MINIMUM, MINIMUM, MINIMUM));
+    }
+
+    /**
+     * Brighten a single color channel the same way Color.brighter() does
+     * for a pixel that is not pure black.
+     * @param value The channel value (0..255).
+     * @return The brightened channel value.
      */
-    public void apply(OFImage image)
+    private static int brighter(int value)
     {
-        int height = image.getHeight();
-        int width = image.getWidth();
-        for(int y = 0; y < height; y++) {
-            for(int x = 0; x < width; x++) {
-                image.setPixel(x, y, image.getPixel(x, y).brighter());
-            }
+        if(value > 0 && value < MINIMUM) {
+            value = MINIMUM;
         }
+        return Math.min((int)(value / FACTOR), 255);
     }
 
 }
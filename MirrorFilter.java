@@ -1,5 +1,3 @@
-import java.awt.Color;
-
 /**
  * An image filter to mirror (flip) the image horizontally.
  * 
@@ -18,20 +16,23 @@ public class MirrorFilter extends Filter
 	}
 
     /**
-     * Apply this filter to an image.
+     * Apply this filter to an image. Each row is mirrored on its own, in
+     * place, by the transform engine.
      * 
      * @param  image  The image to be changed by this filter.
      */
     public void apply(OFImage image)
     {
-        int height = image.getHeight();
-        int width = image.getWidth();
-        for(int y = 0; y < height; y++) {
-            for(int x = 0; x < width / 2; x++) {
-                Color left = image.getPixel(x, y);
-                image.setPixel(x, y, image.getPixel(width - 1 - x, y));
-                image.setPixel(width - 1 - x, y, left);
-            }
-        }
+        TransformEngine.transformInPlace(image, TransformEngine.Transform.FLIP_HORIZONTAL);
+    }
+
+    /**
+     * This filter is undone by mirroring again.
+     * 
+     * @return This filter.
+     */
+    public Filter getInverse()
+    {
+        return this;
     }
 }
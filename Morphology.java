@@ -0,0 +1,207 @@
+import java.util.Arrays;
+
+/**
+ * Morphology is a small utility class with static methods for the basic
+ * operations of mathematical morphology on packed RGB pixels. Each color
+ * channel is treated on its own:
+ *
+ *   dilate   - every pixel becomes the largest value in the square around it
+ *   erode    - every pixel becomes the smallest value in the square around it
+ *   gradient - the difference between the two, which is large at edges
+ *
+ * The square is clipped to the image at the edges. It is handled as a
+ * row pass followed by a column pass, and each pass uses the van Herk /
+ * Gil-Werman algorithm: the line is cut into blocks as long as the
+ * window, running maxima are kept forwards and backwards inside each
+ * block, and every window is then covered by one value from each. This
+ * costs about three comparisons per pixel, whatever the radius.
+ *
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+public class Morphology
+{
+    // the number of columns handled together in the column pass
+    private static final int BAND_WIDTH = 64;
+
+    // the neutral values that pad the lines: nothing is below 0 or above 255
+    private static final int MAX_IDENTITY = 0x000000;
+    private static final int MIN_IDENTITY = 0xffffff;
+
+    /**
+     * Replace every pixel with the per-channel maximum of the square
+     * around it.
+     *
+     * @param source The pixels to read.
+     * @param dest The array to write to. May be the same as source.
+     * @param width The width of the image.
+     * @param height The height of the image.
+     * @param radius The radius of the square; 1 means 3x3.
+     */
+    public static void dilate(int[] source, int[] dest, int width, int height, int radius)
+    {
+        slide(source, dest, width, height, radius, true);
+    }
+
+    /**
+     * Replace every pixel with the per-channel minimum of the square
+     * around it.
+     *
+     * @param source The pixels to read.
+     * @param dest The array to write to. May be the same as source.
+     * @param width The width of the image.
+     * @param height The height of the image.
+     * @param radius The radius of the square; 1 means 3x3.
+     */
+    public static void erode(int[] source, int[] dest, int width, int height, int radius)
+    {
+        slide(source, dest, width, height, radius, false);
+    }
+
+    /**
+     * Replace every pixel with the per-channel difference between the
+     * maximum and the minimum of the square around it.
+     *
+     * @param source The pixels to read.
+     * @param dest The array to write to. Must not be the same as source.
+     * @param width The width of the image.
+     * @param height The height of the image.
+     * @param radius The radius of the square; 1 means 3x3.
+     */
+    public static void gradient(int[] source, int[] dest, int width, int height, int radius)
+    {
+        int[] minimum = new int[source.length];
+        dilate(source, dest, width, height, radius);
+        erode(source, minimum, width, height, radius);
+        // the maximum is never below the minimum in any channel, so a plain
+        // subtraction of the packed values never borrows between channels
+        FilterEngine.getDefault().forEachStrip(height, width, (startRow, endRow) -> {
+            for(int i = startRow * width; i < endRow * width; i++) {
+                dest[i] -= minimum[i];
+            }
+        });
+    }
+
+    /**
+     * Run the row pass and then the column pass of a dilation or erosion.
+     */
+    private static void slide(int[] source, int[] dest, int width, int height, int radius,
+                              boolean max)
+    {
+        if(radius < 1) {
+            throw new IllegalArgumentException("radius must be at least 1");
+        }
+        int identity = max ? MAX_IDENTITY : MIN_IDENTITY;
+        FilterEngine engine = FilterEngine.getDefault();
+        engine.forEachStrip(height, width, (startRow, endRow) -> {
+            int length = width + 2 * radius;
+            int[] line = new int[length];
+            int[] forward = new int[length];
+            int[] backward = new int[length];
+            Arrays.fill(line, identity);
+            for(int y = startRow; y < endRow; y++) {
+                // pad the row with neutral values, so that every window
+                // is exactly 2 * radius + 1 long
+                int offset = y * width;
+                for(int x = 0; x < width; x++) {
+                    line[radius + x] = source[offset + x] & 0xffffff;
+                }
+                slideLine(line, forward, backward, 1, length, radius, max);
+                int last = 2 * radius;
+                for(int x = 0; x < width; x++) {
+                    dest[offset + x] = combine(backward[x], forward[x + last], max);
+                }
+            }
+        });
+        int bands = (width + BAND_WIDTH - 1) / BAND_WIDTH;
+        engine.forEachStrip(bands, BAND_WIDTH * height, (startBand, endBand) -> {
+            int length = height + 2 * radius;
+            int[] lines = new int[length * BAND_WIDTH];
+            int[] forward = new int[length * BAND_WIDTH];
+            int[] backward = new int[length * BAND_WIDTH];
+            Arrays.fill(lines, identity);
+            for(int band = startBand; band < endBand; band++) {
+                int left = band * BAND_WIDTH;
+                int bandWidth = Math.min(left + BAND_WIDTH, width) - left;
+                // copy the band, padded with neutral rows at top and bottom
+                for(int y = 0; y < height; y++) {
+                    System.arraycopy(dest, y * width + left, 
+                                     lines, (y + radius) * BAND_WIDTH, bandWidth);
+                }
+                slideLine(lines, forward, backward, BAND_WIDTH, length, radius, max);
+                int last = 2 * radius * BAND_WIDTH;
+                for(int y = 0; y < height; y++) {
+                    int row = y * BAND_WIDTH;
+                    int offset = y * width + left;
+                    for(int x = 0; x < bandWidth; x++) {
+                        dest[offset + x] = combine(backward[row + x], forward[row + last + x], max);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Compute the running maxima (or minima) inside each block of a padded
+     * line, forwards and backwards. The line may hold several lines side
+     * by side: "step" values make up one position along it, and they are
+     * all processed together.
+     *
+     * @param line The padded values.
+     * @param forward Receives the running values from each block start.
+     * @param backward Receives the running values from each block end.
+     * @param step The number of values at each position.
+     * @param length The number of positions.
+     * @param radius The radius of the window.
+     * @param max true for maxima, false for minima.
+     */
+    private static void slideLine(int[] line, int[] forward, int[] backward, int step,
+                                  int length, int radius, boolean max)
+    {
+        int window = 2 * radius + 1;
+        for(int blockStart = 0; blockStart < length; blockStart += window) {
+            int first = blockStart * step;
+            int end = Math.min(blockStart + window, length) * step;
+            System.arraycopy(line, first, forward, first, step);
+            for(int i = first + step; i < end; i++) {
+                forward[i] = combine(forward[i - step], line[i], max);
+            }
+            System.arraycopy(line, end - step, backward, end - step, step);
+            for(int i = end - step - 1; i >= first; i--) {
+                backward[i] = combine(backward[i + step], line[i], max);
+            }
+        }
+    }
+
+    /**
+     * Return the per-channel maximum or minimum of two packed pixels.
+     */
+    private static int combine(int a, int b, boolean max)
+    {
+        return max ? maxRGB(a, b) : minRGB(a, b);
+    }
+
+    /**
+     * @param a A packed pixel.
+     * @param b Another packed pixel.
+     * @return The per-channel maximum of the two pixels.
+     */
+    public static int maxRGB(int a, int b)
+    {
+        return Math.max(a & 0xff0000, b & 0xff0000)
+               | Math.max(a & 0x00ff00, b & 0x00ff00)
+               | Math.max(a & 0x0000ff, b & 0x0000ff);
+    }
+
+    /**
+     * @param a A packed pixel.
+     * @param b Another packed pixel.
+     * @return The per-channel minimum of the two pixels.
+     */
+    public static int minRGB(int a, int b)
+    {
+        return Math.min(a & 0xff0000, b & 0xff0000)
+               | Math.min(a & 0x00ff00, b & 0x00ff00)
+               | Math.min(a & 0x0000ff, b & 0x0000ff);
+    }
+}
@@ -10,14 +10,38 @@ import javax.swing.*;
  */
 public class OFImage extends BufferedImage
 {
+    // The pixel array backing this image's raster. Pixels are stored row 
+    // by row as packed 0xRRGGBB ints; the top byte is ignored.
+    private final int[] pixels;
+
     /**
-     * Create an OFImage copied from a BufferedImage.
+     * Create an OFImage copied from a BufferedImage. Whatever the format
+     * of the original, the copy stores its pixels as packed RGB ints.
      * @param image The image to copy.
      */
     public OFImage(BufferedImage image)
     {
-         super(image.getColorModel(), image.copyData(null), 
-               image.isAlphaPremultiplied(), null);
+        this(image.getWidth(), image.getHeight());
+        int width = image.getWidth();
+        int height = image.getHeight();
+        if(image instanceof OFImage) {
+            System.arraycopy(((OFImage) image).pixels, 0, pixels, 0, pixels.length);
+        }
+        else if(image.getType() == TYPE_3BYTE_BGR || image.getType() == TYPE_INT_BGR ||
+                image.getType() == TYPE_INT_RGB) {
+            // the common decoder formats have a fast blit to packed RGB
+            Graphics2D g = createGraphics();
+            g.drawImage(image, 0, 0, null);
+            g.dispose();
+        }
+        else {
+            // any other format, including alpha, goes through the color model;
+            // getRGB gives ARGB, and the alpha byte must not be kept
+            image.getRGB(0, 0, width, height, pixels, 0, width);
+            for(int i = 0; i < pixels.length; i++) {
+                pixels[i] &= 0xffffff;
+            }
+        }
     }
 
     /**
@@ -28,6 +52,7 @@ public class OFImage extends BufferedImage
     public OFImage(int width, int height)
     {
         super(width, height, TYPE_INT_RGB);
+        pixels = ((DataBufferInt) getRaster().getDataBuffer()).getData();
     }
 
     /**
@@ -54,4 +79,129 @@ public class OFImage extends BufferedImage
         int pixel = getRGB(x, y);
         return new Color(pixel);
     }
+
+    /**
+     * Return the array that holds the pixels of this image. The array is
+     * not a copy: changes made to it change the image. Pixel (x, y) is 
+     * found at index y * getWidth() + x, packed as 0xRRGGBB.
+     * @return The pixel array of this image.
+     */
+    public int[] getPixelData()
+    {
+        return pixels;
+    }
+
+    /**
+     * Copy one row of pixels into an array.
+     * @param y The row to copy.
+     * @param row The array to copy into, or null to allocate a new one.
+     * @return The array holding the row.
+     */
+    public int[] getRow(int y, int[] row)
+    {
+        return getRegion(0, y, getWidth(), 1, row);
+    }
+
+    /**
+     * Replace one row of pixels with the contents of an array.
+     * @param y The row to replace.
+     * @param row The packed pixels of the new row.
+     */
+    public void setRow(int y, int[] row)
+    {
+        setRegion(0, y, getWidth(), 1, row);
+    }
+
+    /**
+     * Copy a rectangular region of pixels into an array, row by row.
+     * @param x The left edge of the region.
+     * @param y The top edge of the region.
+     * @param w The width of the region.
+     * @param h The height of the region.
+     * @param buffer The array to copy into, or null to allocate a new one.
+     * @return The array holding the region.
+     */
+    public int[] getRegion(int x, int y, int w, int h, int[] buffer)
+    {
+        checkRegion(x, y, w, h);
+        if(buffer == null) {
+            buffer = new int[w * h];
+        }
+        int width = getWidth();
+        for(int row = 0; row < h; row++) {
+            System.arraycopy(pixels, (y + row) * width + x, buffer, row * w, w);
+        }
+        return buffer;
+    }
+
+    /**
+     * Replace a rectangular region of pixels with the contents of an array.
+     * @param x The left edge of the region.
+     * @param y The top edge of the region.
+     * @param w The width of the region.
+     * @param h The height of the region.
+     * @param buffer The packed pixels of the region, row by row.
+     */
+    public void setRegion(int x, int y, int w, int h, int[] buffer)
+    {
+        checkRegion(x, y, w, h);
+        int width = getWidth();
+        for(int row = 0; row < h; row++) {
+            System.arraycopy(buffer, row * w, pixels, (y + row) * width + x, w);
+        }
+    }
+
+    /**
+     * Return the red component of a packed pixel.
+     * @param rgb The packed pixel.
+     * @return The red value (0..255).
+     */
+    public static int red(int rgb)
+    {
+        return (rgb >> 16) & 0xff;
+    }
+
+    /**
+     * Return the green component of a packed pixel.
+     * @param rgb The packed pixel.
+     * @return The green value (0..255).
+     */
+    public static int green(int rgb)
+    {
+        return (rgb >> 8) & 0xff;
+    }
+
+    /**
+     * Return the blue component of a packed pixel.
+     * @param rgb The packed pixel.
+     * @return The blue value (0..255).
+     */
+    public static int blue(int rgb)
+    {
+        return rgb & 0xff;
+    }
+
+    /**
+     * Pack three color components into a single pixel value.
+     * @param red The red value (0..255).
+     * @param green The green value (0..255).
+     * @param blue The blue value (0..255).
+     * @return The packed pixel.
+     */
+    public static int packRGB(int red, int green, int blue)
+    {
+        return (red << 16) | (green << 8) | blue;
+    }
+
+    /**
+     * Check that a region lies inside this image.
+     */
+    private void checkRegion(int x, int y, int w, int h)
+    {
+        if(x < 0 || y < 0 || w < 0 || h < 0 || 
+           x + w > getWidth() || y + h > getHeight()) {
+            throw new IllegalArgumentException("Region outside image: " + 
+                                               x + "," + y + " " + w + "x" + h);
+        }
+    }
 }
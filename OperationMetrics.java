@@ -0,0 +1,268 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.ToLongFunction;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * OperationMetrics measures the operations of the application: filters,
+ * transforms, undo and redo, loading and saving. For each kind of
+ * operation, by name, it counts how often it ran, how long it took (with a
+ * histogram of the times), how many pixels per second it went through, and
+ * how many bytes it allocated.
+ *
+ * The allocated bytes are those of the thread that ran the operation. Work
+ * that FilterEngine spreads over its pool is not included; that is mostly
+ * arithmetic on existing pixel arrays, while the images themselves are
+ * allocated by the calling thread.
+ *
+ * There is one instance, which is published as a JMX MXBean, named
+ * imageviewer:type=OperationMetrics, so it can be watched with JConsole
+ * or any other JMX client. Operations whose 95th percentile time is above
+ * a latency budget are listed there.
+ *
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+public class OperationMetrics implements OperationMetricsMXBean
+{
+    // the number of histogram buckets: the last holds times of 2^14 ms on
+    private static final int BUCKETS = 16;
+    private static final double DEFAULT_LATENCY_BUDGET_MILLIS = 500;
+    private static final String OBJECT_NAME = "imageviewer:type=OperationMetrics";
+
+    private static OperationMetrics instance;
+
+    // the measurements, by operation name
+    private final Map<String, Measurements> operations;
+    private final ThreadMXBean threads;
+    private volatile double latencyBudgetMillis;
+    private volatile String lastOperation;
+    private volatile UndoHistory undoHistory;
+
+    /**
+     * Return the metrics of the application, publishing them through JMX
+     * when first asked for.
+     * @return The metrics.
+     */
+    public static synchronized OperationMetrics getInstance()
+    {
+        if(instance == null) {
+            instance = new OperationMetrics();
+            try {
+                ManagementFactory.getPlatformMBeanServer()
+                                 .registerMBean(instance, new ObjectName(OBJECT_NAME));
+            }
+            catch(JMException exc) {
+                // the metrics are still kept, just not published
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Create empty metrics.
+     */
+    private OperationMetrics()
+    {
+        operations = new TreeMap<>();
+        threads = ManagementFactory.getThreadMXBean();
+        latencyBudgetMillis = DEFAULT_LATENCY_BUDGET_MILLIS;
+        lastOperation = "";
+    }
+
+    /**
+     * An Operation is work to be measured, which may fail with an exception
+     * of a given type.
+     */
+    public interface Operation<T, E extends Exception>
+    {
+        /**
+         * Do the work.
+         * @return The result.
+         */
+        T run() throws E;
+    }
+
+    /**
+     * Run an operation and measure it. An operation that throws, or that
+     * returns null to say it failed, is not counted.
+     * @param name The name of the operation.
+     * @param operation The operation.
+     * @param pixels Gives the number of pixels the operation worked on,
+     *               from its result.
+     * @return The result of the operation.
+     * @throws E if the operation throws it.
+     */
+    public <T, E extends Exception> T measure(String name, Operation<T, E> operation,
+                                              ToLongFunction<? super T> pixels) throws E
+    {
+        long startBytes = getAllocatedBytes();
+        long start = System.nanoTime();
+        T result = operation.run();
+        long nanos = System.nanoTime() - start;
+        if(result != null) {
+            long bytes = startBytes < 0 ? 0 : Math.max(0, getAllocatedBytes() - startBytes);
+            record(name, pixels.applyAsLong(result), nanos, bytes);
+        }
+        return result;
+    }
+
+    /**
+     * Count an operation that has been measured elsewhere.
+     * @param name The name of the operation.
+     * @param pixels The number of pixels the operation worked on.
+     * @param nanos The time it took, in nanoseconds.
+     * @param bytes The bytes it allocated.
+     */
+    public void record(String name, long pixels, long nanos, long bytes)
+    {
+        synchronized(operations) {
+            operations.computeIfAbsent(name, key -> new Measurements())
+                      .add(pixels, nanos, bytes);
+        }
+        lastOperation = name + ": " + formatTime(nanos, pixels);
+    }
+
+    /**
+     * Let the undo memory be watched.
+     * @param history The undo history of the application.
+     */
+    public void setUndoHistory(UndoHistory history)
+    {
+        undoHistory = history;
+    }
+
+    /**
+     * Return a time, and the pixels per second it means, as text, such as
+     * "120 ms, 100.0 MP/s".
+     * @param nanos The time, in nanoseconds.
+     * @param pixels The number of pixels, or 0 to leave out the rate.
+     * @return The text.
+     */
+    public static String formatTime(long nanos, long pixels)
+    {
+        String time = nanos < 10_000_000 ? String.format("%.1f ms", nanos / 1e6)
+                                         : String.format("%d ms", nanos / 1_000_000);
+        if(pixels <= 0 || nanos <= 0) {
+            return time;
+        }
+        return String.format("%s, %.1f MP/s", time, pixels * 1e3 / nanos);
+    }
+
+    // ---- the management interface ----
+
+    public List<OperationStatistics> getOperations()
+    {
+        List<OperationStatistics> statistics = new ArrayList<>();
+        synchronized(operations) {
+            for(Map.Entry<String, Measurements> entry : operations.entrySet()) {
+                statistics.add(entry.getValue().getStatistics(entry.getKey()));
+            }
+        }
+        return statistics;
+    }
+
+    public List<String> getOperationsOverBudget()
+    {
+        List<String> names = new ArrayList<>();
+        for(OperationStatistics statistics : getOperations()) {
+            if(statistics.getP95Millis() > latencyBudgetMillis) {
+                names.add(statistics.getName());
+            }
+        }
+        return names;
+    }
+
+    public double getLatencyBudgetMillis()
+    {
+        return latencyBudgetMillis;
+    }
+
+    public void setLatencyBudgetMillis(double millis)
+    {
+        latencyBudgetMillis = millis;
+    }
+
+    public String getLastOperation()
+    {
+        return lastOperation;
+    }
+
+    public long getUndoMemoryUsed()
+    {
+        UndoHistory history = undoHistory;
+        return history == null ? 0 : history.getMemoryUsed();
+    }
+
+    public long getUndoMemoryBudget()
+    {
+        UndoHistory history = undoHistory;
+        return history == null ? 0 : history.getMemoryBudget();
+    }
+
+    public void reset()
+    {
+        synchronized(operations) {
+            operations.clear();
+        }
+        lastOperation = "";
+    }
+
+    /**
+     * Return the bytes the current thread has allocated so far, or -1 if
+     * the JVM cannot tell.
+     */
+    private long getAllocatedBytes()
+    {
+        if(threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunThreads = (com.sun.management.ThreadMXBean) threads;
+            if(sunThreads.isThreadAllocatedMemoryEnabled()) {
+                return sunThreads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The Measurements of one kind of operation, added up.
+     */
+    private static class Measurements
+    {
+        private long count;
+        private long totalNanos;
+        private long maxNanos;
+        private long totalPixels;
+        private long totalBytes;
+        private final long[] histogram = new long[BUCKETS];
+
+        /**
+         * Add the measurements of one run.
+         */
+        void add(long pixels, long nanos, long bytes)
+        {
+            count++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+            totalPixels += pixels;
+            totalBytes += bytes;
+            long millis = nanos / 1_000_000;
+            int bucket = millis == 0 ? 0 : 64 - Long.numberOfLeadingZeros(millis);
+            histogram[Math.min(BUCKETS - 1, bucket)]++;
+        }
+
+        /**
+         * Return the statistics of these measurements.
+         */
+        OperationStatistics getStatistics(String name)
+        {
+            double megapixelsPerSecond = totalNanos == 0 ? 0 : totalPixels * 1e3 / totalNanos;
+            return new OperationStatistics(name, count, totalNanos / 1e6 / count, maxNanos / 1e6,
+                                           megapixelsPerSecond, totalBytes, histogram);
+        }
+    }
+}
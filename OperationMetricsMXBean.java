@@ -0,0 +1,56 @@
+import java.util.List;
+
+/**
+ * The management interface of OperationMetrics, as seen in a JMX console
+ * such as JConsole, under the name imageviewer:type=OperationMetrics.
+ *
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+public interface OperationMetricsMXBean
+{
+    /**
+     * @return The statistics of each operation measured so far, by name.
+     */
+    List<OperationStatistics> getOperations();
+
+    /**
+     * @return The names of the operations whose 95th percentile time is
+     *         above the latency budget. The percentile is estimated from a
+     *         histogram with buckets that double in width, interpolating
+     *         within the bucket it falls in, so it is approximate.
+     */
+    List<String> getOperationsOverBudget();
+
+    /**
+     * @return The time an operation should take at most, in milliseconds.
+     */
+    double getLatencyBudgetMillis();
+
+    /**
+     * @param millis The time an operation should take at most.
+     */
+    void setLatencyBudgetMillis(double millis);
+
+    /**
+     * @return The name and time of the operation that finished last.
+     */
+    String getLastOperation();
+
+    /**
+     * @return The bytes of heap that the undo history uses, or 0 if there
+     *         is none.
+     */
+    long getUndoMemoryUsed();
+
+    /**
+     * @return The bytes of heap the undo history may use, or 0 if there is
+     *         none.
+     */
+    long getUndoMemoryBudget();
+
+    /**
+     * Forget all measurements.
+     */
+    void reset();
+}
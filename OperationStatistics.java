@@ -0,0 +1,157 @@
+import java.beans.ConstructorProperties;
+
+/**
+ * OperationStatistics are the measurements of one kind of operation (one
+ * filter, for example) at one moment: how often it ran, how long it took,
+ * how fast it went through pixels, and how much memory it allocated.
+ *
+ * The times are also counted in a histogram with buckets that double in
+ * width: bucket 0 holds times under 1 ms, bucket i times from 2^(i-1) to
+ * 2^i ms, and the last bucket all longer times. Percentiles are estimated
+ * from it by assuming the times in a bucket are spread evenly over it, up
+ * to the longest time, so they are not rounded up to the next power of
+ * two.
+ *
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+public class OperationStatistics
+{
+    private final String name;
+    private final long count;
+    private final double meanMillis;
+    private final double maxMillis;
+    private final double megapixelsPerSecond;
+    private final long bytesAllocated;
+    private final long[] histogram;
+
+    /**
+     * Create the statistics of an operation.
+     * @param name The name of the operation.
+     * @param count The number of times it ran.
+     * @param meanMillis The mean time it took.
+     * @param maxMillis The longest time it took.
+     * @param megapixelsPerSecond The pixels it went through per second, on
+     *                            average, in millions.
+     * @param bytesAllocated The bytes it allocated in total.
+     * @param histogram The number of times in each bucket.
+     */
+    @ConstructorProperties({"name", "count", "meanMillis", "maxMillis", "megapixelsPerSecond",
+                            "bytesAllocated", "histogram"})
+    public OperationStatistics(String name, long count, double meanMillis, double maxMillis,
+                               double megapixelsPerSecond, long bytesAllocated, long[] histogram)
+    {
+        this.name = name;
+        this.count = count;
+        this.meanMillis = meanMillis;
+        this.maxMillis = maxMillis;
+        this.megapixelsPerSecond = megapixelsPerSecond;
+        this.bytesAllocated = bytesAllocated;
+        this.histogram = histogram.clone();
+    }
+
+    /**
+     * @return The name of the operation.
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * @return The number of times the operation ran.
+     */
+    public long getCount()
+    {
+        return count;
+    }
+
+    /**
+     * @return The mean time the operation took, in milliseconds.
+     */
+    public double getMeanMillis()
+    {
+        return meanMillis;
+    }
+
+    /**
+     * @return The longest time the operation took, in milliseconds.
+     */
+    public double getMaxMillis()
+    {
+        return maxMillis;
+    }
+
+    /**
+     * @return The millions of pixels gone through per second, on average.
+     */
+    public double getMegapixelsPerSecond()
+    {
+        return megapixelsPerSecond;
+    }
+
+    /**
+     * @return The bytes allocated by all runs together.
+     */
+    public long getBytesAllocated()
+    {
+        return bytesAllocated;
+    }
+
+    /**
+     * @return The number of times in each bucket of the histogram.
+     */
+    public long[] getHistogram()
+    {
+        return histogram.clone();
+    }
+
+    /**
+     * @return The median time, estimated from the histogram.
+     */
+    public double getP50Millis()
+    {
+        return getPercentileMillis(0.50);
+    }
+
+    /**
+     * @return The 95th percentile time, estimated from the histogram.
+     */
+    public double getP95Millis()
+    {
+        return getPercentileMillis(0.95);
+    }
+
+    /**
+     * @return The 99th percentile time, estimated from the histogram.
+     */
+    public double getP99Millis()
+    {
+        return getPercentileMillis(0.99);
+    }
+
+    /**
+     * Return a percentile time, estimated from the histogram: the bucket
+     * it falls in is found, and the time interpolated linearly between the
+     * ends of that bucket by how far into it the percentile is. The upper
+     * end is taken as no more than the longest time.
+     * @param fraction The percentile, from 0 to 1.
+     * @return The time, in milliseconds.
+     */
+    public double getPercentileMillis(double fraction)
+    {
+        long wanted = (long) Math.ceil(fraction * count);
+        long seen = 0;
+        for(int bucket = 0; bucket < histogram.length; bucket++) {
+            if(histogram[bucket] > 0 && seen + histogram[bucket] >= wanted) {
+                double lower = bucket == 0 ? 0 : 1L << (bucket - 1);
+                double upper = bucket == histogram.length - 1
+                               ? maxMillis : Math.min(maxMillis, 1L << bucket);
+                double within = (double) Math.max(0, wanted - seen) / histogram[bucket];
+                return Math.min(maxMillis, lower + (upper - lower) * within);
+            }
+            seen += histogram[bucket];
+        }
+        return maxMillis;
+    }
+}
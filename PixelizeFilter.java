@@ -1,5 +1,3 @@
-import java.awt.Color;
-
 /**
  * An image filter to create a pixelization effect, like an enlarged
  * low-resolution digital image.
@@ -7,8 +5,10 @@ import java.awt.Color;
  * @author Michael Kölling and David J. Barnes.
  * @version 1.0
  */
-public class PixelizeFilter extends Filter
+public class PixelizeFilter extends StripFilter
 {
+    private static final int PIXEL_SIZE = 5;
+
     /**
      * Constructor for objects of class PixelizeFilter.
      * @param name The name of the filter.
@@ -19,26 +19,54 @@ public class PixelizeFilter extends Filter
     }
 
     /**
-     * Apply this filter to an image.
+     * Apply this filter to a range of block rows of an image. Each block 
+     * row is PIXEL_SIZE rows of the image.
      * 
-     * @param  image  The image to be changed by this filter.
+     * @param  source    The pixels to read from.
+     * @param  dest      The pixels to write to.
+     * @param  width     The width of the image.
+     * @param  height    The height of the image.
+     * @param  startRow  The first block row to filter.
+     * @param  endRow    The block row after the last one to filter.
      */
-    public void apply(OFImage image)
+    protected void filterRows(int[] source, int[] dest, int width, int height,
+                              int startRow, int endRow)
     {
-        final int PIXEL_SIZE = 5;
-        int width = image.getWidth();
-        int height = image.getHeight();
-        
-        for(int y = 0; y < height; y += PIXEL_SIZE) {
+        for(int y = startRow * PIXEL_SIZE; y < endRow * PIXEL_SIZE; y += PIXEL_SIZE) {
+            int bottom = Math.min(y + PIXEL_SIZE, height);
             for(int x = 0; x < width; x += PIXEL_SIZE) {
-                Color pix = image.getPixel(x, y);
-                for(int dy = y; dy < y + PIXEL_SIZE; dy++) {
-                    for(int dx = x; dx < x + PIXEL_SIZE; dx++) {
-                        if( dx < width && dy < height )
-                            image.setPixel(dx, dy, pix);
+                int right = Math.min(x + PIXEL_SIZE, width);
+                int pix = source[y * width + x];
+                for(int dy = y; dy < bottom; dy++) {
+                    for(int dx = x; dx < right; dx++) {
+                        dest[dy * width + dx] = pix;
                     }
                 }
             }
         }
     }
+
+    /**
+     * The work is split into bands of PIXEL_SIZE rows, so that every 
+     * block lies in a single band.
+     * 
+     * @param  width   The width of the image.
+     * @param  height  The height of the image.
+     * @return The number of block rows.
+     */
+    protected int getRowCount(int width, int height)
+    {
+        return (height + PIXEL_SIZE - 1) / PIXEL_SIZE;
+    }
+
+    /**
+     * Each block only reads its own top left pixel, so the filter can run
+     * in place without a copy of the image.
+     * 
+     * @return false
+     */
+    protected boolean needsSourceCopy()
+    {
+        return false;
+    }
 }
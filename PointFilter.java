@@ -0,0 +1,83 @@
+/**
+ * A PointFilter is a filter where every new pixel depends only on the old
+ * value of the same pixel. Such a filter is described by a ColorTransform
+ * (lookup tables per channel, possibly after mixing the channels), and is
+ * applied in a single tight pass over the pixels, in place.
+ *
+ * Subclasses only need to say which transform they stand for.
+ *
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+public abstract class PointFilter extends StripFilter
+{
+    private volatile ColorTransform transform;
+
+    /**
+     * Create a new point filter with a given name.
+     * @param name The name of the filter.
+     */
+    public PointFilter(String name)
+    {
+        super(name);
+    }
+
+    /**
+     * Return the color transform of this filter.
+     * @return The transform that this filter applies to every pixel.
+     */
+    public ColorTransform getTransform()
+    {
+        // building the transform twice by accident does no harm
+        ColorTransform result = transform;
+        if(result == null) {
+            result = createTransform();
+            transform = result;
+        }
+        return result;
+    }
+
+    /**
+     * Create the color transform of this filter. This is called once,
+     * the first time the filter is used.
+     * @return The transform that this filter applies to every pixel.
+     */
+    protected abstract ColorTransform createTransform();
+
+    /**
+     * Apply this filter to a range of rows of an image.
+     *
+     * @param  source    The pixels to read from.
+     * @param  dest      The pixels to write to.
+     * @param  width     The width of the image.
+     * @param  height    The height of the image.
+     * @param  startRow  The first row to filter.
+     * @param  endRow    The row after the last row to filter.
+     */
+    protected void filterRows(int[] source, int[] dest, int width, int height,
+                              int startRow, int endRow)
+    {
+        getTransform().apply(source, dest, startRow * width, endRow * width);
+    }
+
+    /**
+     * A point filter only reads the pixel it is writing.
+     *
+     * @return 0
+     */
+    public int getHalo()
+    {
+        return 0;
+    }
+
+    /**
+     * A point filter only reads the pixel it is writing, so it runs in
+     * place without a copy of the image.
+     *
+     * @return false
+     */
+    protected boolean needsSourceCopy()
+    {
+        return false;
+    }
+}
@@ -0,0 +1,125 @@
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+
+/**
+ * A PreviewCache keeps a reduced copy (a proxy) of an image, small enough
+ * to fit a display area, so that filters can be tried on it in an instant.
+ * The proxy is made once and reused for as long as it is asked for with
+ * the same image and the same display size.
+ *
+ * The proxy is made by averaging square blocks of pixels, so it shows the
+ * colors of the image faithfully even when it is much smaller.
+ *
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+public class PreviewCache
+{
+    // a proxy is only worth making if it is at least this much smaller
+    private static final int MIN_FACTOR = 2;
+
+    // the image the proxy was made from; weak, so the cache does not keep
+    // an image alive once the viewer has moved on from it
+    private WeakReference<OFImage> source;
+    private int factor;
+    private OFImage proxy;
+
+    /**
+     * Create an empty preview cache.
+     */
+    public PreviewCache()
+    {
+        source = new WeakReference<>(null);
+    }
+
+    /**
+     * Return a proxy of an image that fits into a display area.
+     * @param image The full image.
+     * @param maxWidth The width of the display area.
+     * @param maxHeight The height of the display area.
+     * @return The proxy, or null if the image is not much larger than the
+     *         display area, so that a proxy would gain nothing.
+     */
+    public synchronized OFImage getProxy(OFImage image, int maxWidth, int maxHeight)
+    {
+        if(maxWidth < 1 || maxHeight < 1) {
+            return null;
+        }
+        int newFactor = Math.max(ceilDiv(image.getWidth(), maxWidth),
+                                 ceilDiv(image.getHeight(), maxHeight));
+        if(newFactor < MIN_FACTOR) {
+            return null;
+        }
+        if(source.get() != image || factor != newFactor) {
+            proxy = shrink(image, newFactor);
+            source = new WeakReference<>(image);
+            factor = newFactor;
+        }
+        return proxy;
+    }
+
+    /**
+     * Forget the proxy.
+     */
+    public synchronized void clear()
+    {
+        source = new WeakReference<>(null);
+        proxy = null;
+    }
+
+    /**
+     * Return an image reduced by a whole factor: each pixel of the result
+     * is the average of a square of factor x factor pixels (smaller at the
+     * right and bottom edges).
+     * @param image The image to reduce.
+     * @param factor The factor to reduce by.
+     * @return The reduced image.
+     */
+    public static OFImage shrink(OFImage image, int factor)
+    {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int newWidth = ceilDiv(width, factor);
+        int newHeight = ceilDiv(height, factor);
+        int[] source = image.getPixelData();
+        OFImage result = new OFImage(newWidth, newHeight);
+        int[] dest = result.getPixelData();
+        FilterEngine.getDefault().forEachStrip(newHeight, width * factor, (startRow, endRow) -> {
+            int[] red = new int[newWidth];
+            int[] green = new int[newWidth];
+            int[] blue = new int[newWidth];
+            for(int y = startRow; y < endRow; y++) {
+                Arrays.fill(red, 0);
+                Arrays.fill(green, 0);
+                Arrays.fill(blue, 0);
+                int top = y * factor;
+                int bottom = Math.min(top + factor, height);
+                for(int sy = top; sy < bottom; sy++) {
+                    int offset = sy * width;
+                    for(int x = 0; x < width; x++) {
+                        int rgb = source[offset + x];
+                        int column = x / factor;
+                        red[column] += (rgb >> 16) & 0xff;
+                        green[column] += (rgb >> 8) & 0xff;
+                        blue[column] += rgb & 0xff;
+                    }
+                }
+                int rows = bottom - top;
+                for(int x = 0; x < newWidth; x++) {
+                    int count = rows * (Math.min((x + 1) * factor, width) - x * factor);
+                    dest[y * newWidth + x] = OFImage.packRGB(red[x] / count, green[x] / count,
+                                                             blue[x] / count);
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Divide, rounding up.
+     */
+    private static int ceilDiv(int a, int b)
+    {
+        return (a + b - 1) / b;
+    }
+}
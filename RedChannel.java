@@ -1,12 +1,10 @@
-import java.awt.Color;
-
 /**
  * Creates a red channel version of the image.
  *
  * @author (Erik Cooke)
  * @version (2019.11.18)
  */
-public class RedChannel extends Filter
+public class RedChannel extends PointFilter
 {
     /**
      * Constructor for objects of class RedChannel.
@@ -18,21 +16,15 @@ public class RedChannel extends Filter
     }
 
     /**
-     * Apply this filter to an image.
-     *
-     * @param  image The image to be changed by the filter.
+     * Create the color transform of this filter: every channel becomes
+     * the red value.
+     * 
+     * @return The transform that this filter applies to every pixel.
      */
-    public void apply(OFImage image)
+    protected ColorTransform createTransform()
     {
-        int width = image.getWidth();
-        int height = image.getHeight();
-        for(int y = 0;y < height;y++)
-        {
-            for(int x = 0;x < width;x++)
-            {
-                Color pix = image.getPixel(x, y);
-                image.setPixel(x, y, new Color(pix.getRed(), pix.getRed(), pix.getRed()));
-            }
-        }
+        return ColorTransform.fromMatrix(new int[] { 1, 0, 0,
+                                                     1, 0, 0,
+                                                     1, 0, 0 }, 1);
     }
 }
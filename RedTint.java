@@ -1,12 +1,10 @@
-import java.awt.Color;
-
 /**
  * Creates a red tinted version of the image.
  *
  * @author (Erik Cooke)
  * @version (2019.11.18)
  */
-public class RedTint extends Filter
+public class RedTint extends PointFilter
 {
     /**
      * Constructor for objects of class RedTint.
@@ -18,21 +16,15 @@ public class RedTint extends Filter
     }
 
     /**
-     * Apply this filter to an image.
-     *
-     * @param  image The image to be changed by the filter.
+     * Create the color transform of this filter: red is kept, green and
+     * blue are removed.
+     * 
+     * @return The transform that this filter applies to every pixel.
      */
-    public void apply(OFImage image)
+    protected ColorTransform createTransform()
     {
-        int width = image.getWidth();
-        int height = image.getHeight();
-        for(int y = 0;y < height;y++)
-        {
-            for(int x = 0;x < width;x++)
-            {
-                Color pix = image.getPixel(x, y);
-                image.setPixel(x, y, new Color(pix.getRed(), 0, 0));
-            }
-        }
+        int[] keep = ColorTransform.table(value -> value);
+        int[] remove = new int[256];
+        return ColorTransform.fromTables(keep, remove, remove);
     }
 }
@@ -0,0 +1,307 @@
+import java.util.Arrays;
+
+/**
+ * Resampler changes the size of images to any width and height, with a
+ * choice of kernels: area averaging, bilinear, bicubic and Lanczos.
+ *
+ * The work is done in two passes, first along the rows and then along the
+ * columns, each run in strips on the threads of the default FilterEngine.
+ * For each pass a table is made first, giving for every pixel of the
+ * result the pixels of the source it is made from and their weights. The
+ * weights are fixed point numbers that add up to exactly one, so the
+ * passes only do integer arithmetic, and an area of one color stays that
+ * color exactly.
+ *
+ * When an image is made smaller, the kernels are widened by the same
+ * factor, so that every source pixel counts and fine detail is averaged
+ * out rather than turned into aliasing patterns.
+ *
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+public class Resampler
+{
+    // the weights are fixed point numbers with this many fraction bits
+    private static final int PRECISION_BITS = 14;
+    private static final int ONE = 1 << PRECISION_BITS;
+    private static final int ROUNDING = 1 << (PRECISION_BITS - 1);
+
+    /**
+     * The kernels, which decide how source pixels are weighted.
+     */
+    public enum Kernel
+    {
+        // the average of the source pixels each result pixel covers
+        AREA("Area", 0.5),
+        // linear interpolation between the nearest pixels
+        BILINEAR("Bilinear", 1),
+        // cubic interpolation (Keys, a = -0.5): sharper than bilinear
+        BICUBIC("Bicubic", 2),
+        // windowed sinc with three lobes: the sharpest, with slight ringing
+        LANCZOS("Lanczos", 3);
+
+        private final String label;
+        private final double support;
+
+        /**
+         * Create a kernel with a given name and radius.
+         */
+        Kernel(String label, double support)
+        {
+            this.label = label;
+            this.support = support;
+        }
+
+        /**
+         * @return The name of the kernel, for display.
+         */
+        public String toString()
+        {
+            return label;
+        }
+
+        /**
+         * Return the weight of a source pixel at a distance from the
+         * sampling point, in source pixels, before normalizing.
+         */
+        double weight(double distance)
+        {
+            double x = Math.abs(distance);
+            switch(this) {
+                case BILINEAR:
+                    return x < 1 ? 1 - x : 0;
+                case BICUBIC:
+                    if(x < 1) {
+                        return (1.5 * x - 2.5) * x * x + 1;
+                    }
+                    return x < 2 ? ((-0.5 * x + 2.5) * x - 4) * x + 2 : 0;
+                case LANCZOS:
+                    return x < 3 ? sinc(x) * sinc(x / 3) : 0;
+                default:
+                    return x <= 0.5 ? 1 : 0;
+            }
+        }
+    }
+
+    /**
+     * Return a copy of an image with a new size. The image is not changed.
+     * @param image The image.
+     * @param width The width of the result, at least 1.
+     * @param height The height of the result, at least 1.
+     * @param kernel The kernel to use.
+     * @return A new image.
+     */
+    public static OFImage resample(OFImage image, int width, int height, Kernel kernel)
+    {
+        if(width < 1 || height < 1) {
+            throw new IllegalArgumentException("Images must be at least 1 x 1 pixels.");
+        }
+        int sourceWidth = image.getWidth();
+        int sourceHeight = image.getHeight();
+        OFImage result = new OFImage(width, height);
+        int[] dest = result.getPixelData();
+        int[] pixels = image.getPixelData();
+        if(width != sourceWidth) {
+            // straight into the result if the height stays the same
+            int[] rows = height == sourceHeight ? dest : new int[width * sourceHeight];
+            resampleRows(pixels, sourceWidth, sourceHeight,
+                         new Weights(sourceWidth, width, kernel), rows, width);
+            pixels = rows;
+        }
+        if(height != sourceHeight) {
+            resampleColumns(pixels, width, sourceHeight,
+                            new Weights(sourceHeight, height, kernel), dest, height);
+        }
+        else if(width == sourceWidth) {
+            System.arraycopy(pixels, 0, dest, 0, dest.length);
+        }
+        return result;
+    }
+
+    /**
+     * Resample every row of an image to a new width, into dest.
+     */
+    private static void resampleRows(int[] source, int sourceWidth, int height,
+                                     Weights weights, int[] dest, int width)
+    {
+        FilterEngine.getDefault().forEachStrip(height, width * weights.taps,
+                                               (startRow, endRow) -> {
+            for(int y = startRow; y < endRow; y++) {
+                int row = y * sourceWidth;
+                for(int x = 0; x < width; x++) {
+                    int first = row + weights.first[x];
+                    int table = x * weights.taps;
+                    int red = ROUNDING;
+                    int green = ROUNDING;
+                    int blue = ROUNDING;
+                    for(int i = 0; i < weights.count[x]; i++) {
+                        int pixel = source[first + i];
+                        int weight = weights.weights[table + i];
+                        red += weight * ((pixel >> 16) & 0xff);
+                        green += weight * ((pixel >> 8) & 0xff);
+                        blue += weight * (pixel & 0xff);
+                    }
+                    dest[y * width + x] = pack(red, green, blue);
+                }
+            }
+        });
+    }
+
+    /**
+     * Resample every column of an image to a new height, into dest. Each
+     * row of the result is added up row by row from the source, so the
+     * source is read along its rows.
+     */
+    private static void resampleColumns(int[] source, int width, int sourceHeight,
+                                        Weights weights, int[] dest, int height)
+    {
+        FilterEngine.getDefault().forEachStrip(height, width * weights.taps,
+                                               (startRow, endRow) -> {
+            int[] red = new int[width];
+            int[] green = new int[width];
+            int[] blue = new int[width];
+            for(int y = startRow; y < endRow; y++) {
+                Arrays.fill(red, ROUNDING);
+                Arrays.fill(green, ROUNDING);
+                Arrays.fill(blue, ROUNDING);
+                int table = y * weights.taps;
+                for(int i = 0; i < weights.count[y]; i++) {
+                    int row = (weights.first[y] + i) * width;
+                    int weight = weights.weights[table + i];
+                    for(int x = 0; x < width; x++) {
+                        int pixel = source[row + x];
+                        red[x] += weight * ((pixel >> 16) & 0xff);
+                        green[x] += weight * ((pixel >> 8) & 0xff);
+                        blue[x] += weight * (pixel & 0xff);
+                    }
+                }
+                int row = y * width;
+                for(int x = 0; x < width; x++) {
+                    dest[row + x] = pack(red[x], green[x], blue[x]);
+                }
+            }
+        });
+    }
+
+    /**
+     * Pack fixed point channel sums into a pixel, clamping them to the
+     * range of a channel (the bicubic and Lanczos kernels overshoot).
+     */
+    private static int pack(int red, int green, int blue)
+    {
+        return clamp(red >> PRECISION_BITS) << 16 | clamp(green >> PRECISION_BITS) << 8
+               | clamp(blue >> PRECISION_BITS);
+    }
+
+    /**
+     * Clamp a value to the range of a color channel.
+     */
+    private static int clamp(int value)
+    {
+        return value < 0 ? 0 : value > 255 ? 255 : value;
+    }
+
+    /**
+     * The normalized sinc function.
+     */
+    private static double sinc(double x)
+    {
+        if(x == 0) {
+            return 1;
+        }
+        return Math.sin(Math.PI * x) / (Math.PI * x);
+    }
+
+    /**
+     * The Weights of one pass: for every pixel of the result along the
+     * pass, the first source pixel it uses, the number of source pixels,
+     * and their fixed point weights, at a fixed stride in one table.
+     */
+    private static class Weights
+    {
+        private final int[] first;
+        private final int[] count;
+        private final int[] weights;
+        // the largest number of source pixels any result pixel uses
+        private final int taps;
+
+        /**
+         * Make the weights for resampling a line of pixels to a new length.
+         */
+        Weights(int sourceLength, int length, Kernel kernel)
+        {
+            double scale = (double) sourceLength / length;
+            // when shrinking, the kernel is widened to cover all pixels
+            double stretch = Math.max(1, scale);
+            double support = kernel.support * stretch;
+            taps = (int) Math.ceil(support) * 2 + 1;
+            first = new int[length];
+            count = new int[length];
+            weights = new int[length * taps];
+            double[] raw = new double[taps];
+            for(int i = 0; i < length; i++) {
+                double center = (i + 0.5) * scale;
+                int start = Math.max(0, (int) Math.floor(center - support));
+                int end = Math.min(sourceLength, (int) Math.ceil(center + support));
+                double total = 0;
+                int n = 0;
+                for(int j = start; j < end && n < taps; j++) {
+                    raw[n] = kernel == Kernel.AREA ? coverage(j, center, scale, stretch)
+                                                   : kernel.weight((j + 0.5 - center) / stretch);
+                    total += raw[n];
+                    n++;
+                }
+                // leave out zero weights at both ends
+                int skip = 0;
+                while(skip < n - 1 && raw[skip] == 0) {
+                    skip++;
+                }
+                while(n > skip + 1 && raw[n - 1] == 0) {
+                    n--;
+                }
+                first[i] = start + skip;
+                count[i] = n - skip;
+                normalize(raw, skip, n, total, weights, i * taps);
+            }
+        }
+
+        /**
+         * Return how much of source pixel j lies inside the area of a
+         * result pixel, for area averaging. When enlarging, the area is
+         * that of one source pixel, centred on the sampling point.
+         */
+        private static double coverage(int j, double center, double scale, double stretch)
+        {
+            double half = scale < 1 ? 0.5 : scale / 2;
+            double low = Math.max(j, center - half);
+            double high = Math.min(j + 1, center + half);
+            return Math.max(0, high - low);
+        }
+
+        /**
+         * Turn raw weights into fixed point weights that add up to
+         * exactly one. Rounding errors go to the largest weight.
+         */
+        private static void normalize(double[] raw, int from, int to, double total,
+                                      int[] table, int offset)
+        {
+            if(total == 0) {
+                // cannot happen for kernels that are 1 at the centre, but
+                // keep the nearest pixel rather than divide by zero
+                table[offset] = ONE;
+                return;
+            }
+            int sum = 0;
+            int largest = offset;
+            for(int j = from; j < to; j++) {
+                int weight = (int) Math.round(raw[j] / total * ONE);
+                table[offset + j - from] = weight;
+                sum += weight;
+                if(weight > table[largest]) {
+                    largest = offset + j - from;
+                }
+            }
+            table[largest] += ONE - sum;
+        }
+    }
+}
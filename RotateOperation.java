@@ -0,0 +1,51 @@
+/**
+ * A RotateOperation turns the image by 90 degrees, to the right or to the
+ * left. Each direction is undone exactly by the other.
+ * 
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+public class RotateOperation extends ImageOperation
+{
+    private boolean clockwise;
+
+    /**
+     * Create a rotation.
+     * @param clockwise true to rotate right, false to rotate left.
+     */
+    public RotateOperation(boolean clockwise)
+    {
+        super(clockwise ? "Rotate Right" : "Rotate Left");
+        this.clockwise = clockwise;
+    }
+
+    /**
+     * Rotate an image.
+     * 
+     * @param  image  The image to rotate.
+     * @return A new, rotated image.
+     */
+    public OFImage apply(OFImage image)
+    {
+        return ImageEvents.applyTransform(getName(), image, this::rotate);
+    }
+
+    /**
+     * Return a copy of an image, rotated.
+     */
+    private OFImage rotate(OFImage image)
+    {
+        return TransformEngine.transform(image, clockwise ? TransformEngine.Transform.ROTATE_90
+                                                          : TransformEngine.Transform.ROTATE_270);
+    }
+
+    /**
+     * A rotation is undone by rotating the other way.
+     * 
+     * @return  The rotation in the other direction.
+     */
+    public ImageOperation getInverse()
+    {
+        return new RotateOperation(!clockwise);
+    }
+}
@@ -1,105 +1,76 @@
-import java.awt.Color;
-import java.util.List;
-import java.util.ArrayList;
-
 /**
  * An image filter to reduce sharp edges and pixelization. A bit like
- * a soft lens.
+ * a soft lens. Every pixel becomes the average of the square of pixels
+ * around it; the size of the square is set by the radius.
  * 
  * @author Michael Kölling and David J. Barnes.
  * @version 1.0
  */
-public class SmoothFilter extends Filter
+public class SmoothFilter extends StripFilter
 {
-    private OFImage original;
-    private int width;
-    private int height;
+    private int radius;
     
     /**
-     * Constructor for objects of class SmoothFilter.
+     * Constructor for objects of class SmoothFilter. The filter averages 
+     * each pixel with its direct neighbours.
      * @param name The name of the filter.
      */
     public SmoothFilter(String name)
     {
-        super(name);
+        this(name, 1);
     }
 
     /**
-     * Apply this filter to an image.
-     * 
-     * @param  image  The image to be changed by this filter.
-     */
-    public void apply(OFImage image)
-    {
-        original = new OFImage(image);
-        width = original.getWidth();
-        height = original.getHeight();
-        
-        for(int y = 0; y < height; y++) {
-            for(int x = 0; x < width; x++) {
-                image.setPixel(x, y, smooth(x, y));
-            }
-        }
-    }
-    
-    /**
-     * Return a new color that is the smoothed color of a given
-     * position. The "smoothed color" is the color value that is the
-     * average of this pixel and all the adjacent pixels.
-     * @param xpos The xposition of the pixel.
-     * @param ypos The yposition of the pixel.
-     * @return The smoothed color.
+     * Constructor for objects of class SmoothFilter with a given radius.
+     * @param name The name of the filter.
+     * @param radius The radius of the square to average; 1 averages a 
+     *               3x3 square.
      */
-    private Color smooth(int xpos, int ypos)
+    public SmoothFilter(String name, int radius)
     {
-        List<Color> pixels = new ArrayList<>(9);
-        
-        for(int y = ypos - 1; y <= ypos + 1; y++) {
-            for(int x = xpos - 1; x <= xpos + 1; x++) {
-                if( x >= 0 && x < width && y >= 0 && y < height )
-                    pixels.add(original.getPixel(x, y));
-            }
+        super(name);
+        if(radius < 1) {
+            throw new IllegalArgumentException("radius must be at least 1");
         }
-
-        return new Color(avgRed(pixels), avgGreen(pixels), avgBlue(pixels));
+        this.radius = radius;
     }
 
     /**
-     * @param pixels The list of pixels.
-     * @return The average of all the red values in the given list of pixels.
+     * Apply this filter to a range of rows of an image.
+     * 
+     * @param  source    The pixels to read from.
+     * @param  dest      The pixels to write to.
+     * @param  width     The width of the image.
+     * @param  height    The height of the image.
+     * @param  startRow  The first row to filter.
+     * @param  endRow    The row after the last row to filter.
      */
-    private int avgRed(List<Color> pixels)
+    protected void filterRows(int[] source, int[] dest, int width, int height,
+                              int startRow, int endRow)
     {
-        int total = 0;
-        for(Color color : pixels) {
-            total += color.getRed();
-        }
-        return total / pixels.size();
+        BoxBlur.blurRows(source, dest, width, height, radius, startRow, endRow);
     }
 
     /**
-     * @param pixels The list of pixels.
-     * @return The average of all the green values in the given list of pixels.
+     * Each strip starts by summing the rows around it, so strips should 
+     * be tall compared to the radius.
+     * 
+     * @param  width   The width of the image.
+     * @param  height  The height of the image.
+     * @return The minimum number of rows in a strip.
      */
-    private int avgGreen(List<Color> pixels)
+    protected int getMinimumStripRows(int width, int height)
     {
-        int total = 0;
-        for(Color color : pixels) {
-            total += color.getGreen();
-        }
-        return total / pixels.size();
+        return BoxBlur.minimumStripRows(radius);
     }
 
     /**
-     * @param pixels The list of pixels.
-     * @return The average of all the blue values in the given list of pixels.
+     * Each pixel is computed from the square of the radius around it.
+     * 
+     * @return The radius.
      */
-    private int avgBlue(List<Color> pixels)
+    public int getHalo()
     {
-        int total = 0;
-        for(Color color : pixels) {
-            total += color.getBlue();
-        }
-        return total / pixels.size();
+        return radius;
     }
 }
@@ -1,12 +1,10 @@
-import java.awt.Color;
-
 /**
  * An image filter to create a solarization effect.
  * 
  * @author Michael Kölling and David J. Barnes.
  * @version 1.0
  */
-public class SolarizeFilter extends Filter
+public class SolarizeFilter extends PointFilter
 {
     /**
      * Constructor for objects of class Solarize.
@@ -18,32 +16,15 @@ public class SolarizeFilter extends Filter
     }
 
     /**
-     * Apply this filter to an image.
+     * Create the color transform of this filter: every channel value up
+     * to 127 is inverted.
      * 
-     * @param  image  The image to be changed by this filter.
+     * @return The transform that this filter applies to every pixel.
      */
-    public void apply(OFImage image)
+    protected ColorTransform createTransform()
     {
-        int height = image.getHeight();
-        int width = image.getWidth();
-        for(int y = 0; y < height; y++) {
-            for(int x = 0; x < width; x++) {
-                Color pix = image.getPixel(x, y);
-                int red = pix.getRed();
-                if(red <= 127) {
-                    red = 255 - red;
-                }
-                int green = pix.getGreen();
-                if(green <= 127) {
-                    green = 255 - green;
-                }
-                int blue = pix.getBlue();
-                if(blue <= 127) {
-                    blue = 255 - blue;
-                }
-                image.setPixel(x, y, new Color(red, green, blue));
-            }
-        }
+        int[] table = ColorTransform.table(value -> value <= 127 ? 255 - value : value);
+        return ColorTransform.fromTables(table, table, table);
     }
 
 }
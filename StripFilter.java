@@ -0,0 +1,89 @@
+/**
+ * A StripFilter is a filter that can work on a range of rows at a time.
+ * This lets a FilterEngine split the image into strips and filter the
+ * strips in parallel.
+ *
+ * A filter that reads pixels other than the one it is writing (such as
+ * a smoothing filter) reads them from an unchanged copy of the image, so
+ * the strips never see each other's results.
+ *
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+public abstract class StripFilter extends Filter
+{
+    /**
+     * Create a new strip filter with a given name.
+     * @param name The name of the filter.
+     */
+    public StripFilter(String name)
+    {
+        super(name);
+    }
+
+    /**
+     * Apply this filter to an image, using the default filter engine.
+     *
+     * @param  image  The image to be changed by this filter.
+     */
+    public void apply(OFImage image)
+    {
+        FilterEngine.getDefault().apply(this, image);
+    }
+
+    /**
+     * Return whether this filter needs to read from an unchanged copy of
+     * the image. Filters that only ever read the pixels they write may
+     * return false, and are then run in place.
+     *
+     * @return true if a copy of the source pixels is needed.
+     */
+    protected boolean needsSourceCopy()
+    {
+        return true;
+    }
+
+    /**
+     * Return the number of rows that this filter splits its work into.
+     * Usually this is the height of the image, but a filter may count in
+     * larger units, such as a band of rows that are written together.
+     *
+     * @param width The width of the image.
+     * @param height The height of the image.
+     * @return The number of work rows.
+     */
+    protected int getRowCount(int width, int height)
+    {
+        return height;
+    }
+
+    /**
+     * Return the smallest number of work rows worth giving to a thread.
+     * Filters that have to prepare something for every strip may ask for
+     * taller strips.
+     *
+     * @param width The width of the image.
+     * @param height The height of the image.
+     * @return The minimum number of work rows in a strip.
+     */
+    protected int getMinimumStripRows(int width, int height)
+    {
+        return 1;
+    }
+
+    /**
+     * Filter a range of rows. Pixels are packed 0xRRGGBB values, stored
+     * row by row. This method may be called from several threads at once
+     * for different row ranges, so it must not keep state in fields.
+     *
+     * @param source The pixels to read from. For filters that do not
+     *               need a copy, this is the same array as dest.
+     * @param dest The pixels to write to.
+     * @param width The width of the image.
+     * @param height The height of the image.
+     * @param startRow The first work row to filter.
+     * @param endRow The work row after the last one to filter.
+     */
+    protected abstract void filterRows(int[] source, int[] dest, int width, int height,
+                                       int startRow, int endRow);
+}
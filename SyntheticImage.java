@@ -0,0 +1,120 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * SyntheticImage makes test images of any size, with content of a few
+ * typical kinds. The same size, kind and seed always give the same image,
+ * so measurements made with them can be compared across runs.
+ *
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+public class SyntheticImage
+{
+    /**
+     * The kinds of content.
+     */
+    public enum Content
+    {
+        // a single color: the easiest case for compression
+        FLAT,
+        // smooth color gradients, like sky
+        GRADIENT,
+        // independent random pixels: the hardest case for compression
+        NOISE,
+        // gradients with shapes, sharp edges and some grain, like a photo
+        PHOTO
+    }
+
+    /**
+     * Make a test image.
+     * @param width The width.
+     * @param height The height.
+     * @param content The kind of content.
+     * @param seed The seed of the random numbers used.
+     * @return The image.
+     */
+    public static OFImage create(int width, int height, Content content, long seed)
+    {
+        OFImage image = new OFImage(width, height);
+        int[] pixels = image.getPixelData();
+        SplittableRandom random = new SplittableRandom(seed);
+        switch(content) {
+            case FLAT:
+                Arrays.fill(pixels, OFImage.packRGB(96, 128, 160));
+                break;
+            case GRADIENT:
+                fillGradient(pixels, width, height, 0);
+                break;
+            case NOISE:
+                for(int i = 0; i < pixels.length; i++) {
+                    pixels[i] = random.nextInt() & 0xffffff;
+                }
+                break;
+            case PHOTO:
+                fillGradient(pixels, width, height, 12);
+                addShapes(pixels, width, height, random);
+                addGrain(pixels, random, 8);
+                break;
+        }
+        return image;
+    }
+
+    /**
+     * Fill pixels with a diagonal gradient, with sine ripples of a given
+     * strength.
+     */
+    private static void fillGradient(int[] pixels, int width, int height, int ripple)
+    {
+        for(int y = 0; y < height; y++) {
+            for(int x = 0; x < width; x++) {
+                double u = (double) x / width;
+                double v = (double) y / height;
+                int wave = (int) (ripple * Math.sin(x * 0.05 + y * 0.03));
+                pixels[y * width + x] = OFImage.packRGB(clamp((int) (255 * u) + wave),
+                                                        clamp((int) (255 * v) - wave),
+                                                        clamp((int) (255 * (1 - u) * v) + wave));
+            }
+        }
+    }
+
+    /**
+     * Draw rectangles of random colors, giving hard edges.
+     */
+    private static void addShapes(int[] pixels, int width, int height, SplittableRandom random)
+    {
+        int shapes = 20 + (int) ((long) width * height / 100_000);
+        for(int i = 0; i < shapes; i++) {
+            int w = 1 + random.nextInt(Math.max(1, width / 5));
+            int h = 1 + random.nextInt(Math.max(1, height / 5));
+            int x0 = random.nextInt(width);
+            int y0 = random.nextInt(height);
+            int rgb = random.nextInt() & 0xffffff;
+            for(int y = y0; y < Math.min(height, y0 + h); y++) {
+                Arrays.fill(pixels, y * width + x0, y * width + Math.min(width, x0 + w), rgb);
+            }
+        }
+    }
+
+    /**
+     * Add random grain of a given strength to every channel of every pixel.
+     */
+    private static void addGrain(int[] pixels, SplittableRandom random, int strength)
+    {
+        for(int i = 0; i < pixels.length; i++) {
+            int p = pixels[i];
+            pixels[i] = OFImage.packRGB(
+                clamp(OFImage.red(p) + random.nextInt(2 * strength + 1) - strength),
+                clamp(OFImage.green(p) + random.nextInt(2 * strength + 1) - strength),
+                clamp(OFImage.blue(p) + random.nextInt(2 * strength + 1) - strength));
+        }
+    }
+
+    /**
+     * Clamp a value to the range of a color channel.
+     */
+    private static int clamp(int value)
+    {
+        return Math.max(0, Math.min(255, value));
+    }
+}
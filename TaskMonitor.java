@@ -0,0 +1,142 @@
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * A TaskMonitor follows the progress of a piece of image work and lets it
+ * be cancelled. The work is run through run(), which makes the monitor the
+ * current monitor of the thread. The FilterEngine then reports every strip
+ * it finishes to the monitor, and stops before starting a new strip once
+ * the monitor has been cancelled.
+ *
+ * Progress is counted in passes: every time the engine works through an
+ * image, a new pass begins, and the pixels done are counted towards it.
+ *
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+public class TaskMonitor
+{
+    private static final ThreadLocal<TaskMonitor> current = new ThreadLocal<>();
+
+    private final Listener listener;
+    private final AtomicLong done;
+    private volatile boolean cancelled;
+    private volatile int pass;
+    private volatile long passSize;
+
+    /**
+     * A Listener is told about the progress of the work. It is called on
+     * the threads doing the work, so it must be quick and thread safe.
+     */
+    public interface Listener
+    {
+        /**
+         * The work has progressed.
+         * @param pass The number of the current pass, starting at 1.
+         * @param done The number of pixels done in this pass.
+         * @param total The number of pixels of this pass.
+         */
+        void progressChanged(int pass, long done, long total);
+    }
+
+    /**
+     * Create a task monitor.
+     * @param listener The listener to tell about progress, or null.
+     */
+    public TaskMonitor(Listener listener)
+    {
+        this.listener = listener;
+        done = new AtomicLong();
+    }
+
+    /**
+     * Return the monitor of the work the current thread is doing.
+     * @return The monitor, or null if the work is not monitored.
+     */
+    public static TaskMonitor current()
+    {
+        return current.get();
+    }
+
+    /**
+     * Do a piece of work on the current thread, with this monitor as its
+     * monitor.
+     * @param work The work to do.
+     * @return The result of the work.
+     * @throws CancellationException if the monitor was cancelled.
+     */
+    public <T> T run(Supplier<T> work)
+    {
+        TaskMonitor previous = current.get();
+        current.set(this);
+        try {
+            checkCancelled();
+            T result = work.get();
+            checkCancelled();
+            return result;
+        }
+        finally {
+            current.set(previous);
+        }
+    }
+
+    /**
+     * Ask the work to stop. It stops before its next strip.
+     */
+    public void cancel()
+    {
+        cancelled = true;
+    }
+
+    /**
+     * Return whether the work was asked to stop.
+     * @return true if cancel() was called.
+     */
+    public boolean isCancelled()
+    {
+        return cancelled;
+    }
+
+    /**
+     * Stop the work if it was asked to stop.
+     * @throws CancellationException if the monitor was cancelled.
+     */
+    public void checkCancelled()
+    {
+        if(cancelled) {
+            throw new CancellationException("cancelled");
+        }
+    }
+
+    /**
+     * Start a new pass over some pixels.
+     * @param pixels The number of pixels of the pass.
+     */
+    public void beginPass(long pixels)
+    {
+        pass++;
+        passSize = pixels;
+        done.set(0);
+        report(0);
+    }
+
+    /**
+     * Count some pixels of the current pass as done.
+     * @param pixels The number of pixels done.
+     */
+    public void worked(long pixels)
+    {
+        report(done.addAndGet(pixels));
+    }
+
+    /**
+     * Tell the listener, if there is one.
+     */
+    private void report(long pixelsDone)
+    {
+        if(listener != null) {
+            listener.progressChanged(pass, pixelsDone, passSize);
+        }
+    }
+}
@@ -6,8 +6,13 @@ import java.awt.Color;
  * @author Michael Kölling and David J. Barnes.
  * @version 1.0
  */
-public class ThresholdFilter extends Filter
+public class ThresholdFilter extends PointFilter
 {
+    // mixing weights that give every channel the average of all three
+    private static final int[] AVERAGE = { 1, 1, 1,
+                                           1, 1, 1,
+                                           1, 1, 1 };
+
 	/**
 	 * Constructor for objects of class ThresholdFilter.
      * @param name The name of the filter.
@@ -18,28 +23,18 @@ public class ThresholdFilter extends Filter
 	}
 
     /**
-     * Apply this filter to an image.
+     * Create the color transform of this filter: the average of the
+     * channels picks black, gray or white.
      * 
-     * @param  image  The image to be changed by this filter.
+     * @return The transform that this filter applies to every pixel.
      */
-    public void apply(OFImage image)
+    protected ColorTransform createTransform()
     {
-        int height = image.getHeight();
-        int width = image.getWidth();
-        for(int y = 0; y < height; y++) {
-            for(int x = 0; x < width; x++) {
-                Color pixel = image.getPixel(x, y);
-                int brightness = (pixel.getRed() + pixel.getBlue() + pixel.getGreen()) / 3;
-                if(brightness <= 85) {
-                    image.setPixel(x, y, Color.BLACK);
-                }
-                else if(brightness <= 170) {
-                    image.setPixel(x, y, Color.GRAY);
-                }
-                else {
-                    image.setPixel(x, y, Color.WHITE);
-                }
-            }
-        }
+        int black = Color.BLACK.getRed();
+        int gray = Color.GRAY.getRed();
+        int white = Color.WHITE.getRed();
+        int[] table = ColorTransform.table(brightness -> brightness <= 85 ? black :
+                                                         brightness <= 170 ? gray : white);
+        return ColorTransform.fromMatrix(AVERAGE, 3).withTables(table, table, table);
     }
 }
@@ -0,0 +1,309 @@
+import java.awt.image.BufferedImage;
+import javax.imageio.ImageIO;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * A ThumbnailIndex keeps small versions of the images in one folder, so
+ * that a folder can be browsed without decoding its images.
+ *
+ * The thumbnails are stored on disk, all of them packed into one index file
+ * per folder, in the user's home folder. Each is stored as JPEG data, by the
+ * name, length and modification time of its file; only the thumbnails that
+ * are shown are decoded. The index is read when it is created, so a folder
+ * that was seen before shows its thumbnails at once.
+ *
+ * Thumbnails of new or changed files are made in the background, several
+ * at a time, from subsampled decodes of the files. The index file is
+ * written back every so often while that happens, and at the end.
+ *
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+public class ThumbnailIndex
+{
+    // the largest width and height of a thumbnail
+    public static final int THUMBNAIL_SIZE = 128;
+
+    private static final int MAGIC = 0x54484d42;  // "THMB"
+    private static final int VERSION = 1;
+    // the number of new thumbnails after which the index file is written
+    private static final int SAVE_EVERY = 200;
+    private static final File INDEX_FOLDER =
+        new File(System.getProperty("user.home"), ".imageviewer" + File.separator + "thumbnails");
+
+    // makes the thumbnails of all indexes, leaving a processor for the viewer
+    private static final ExecutorService generator = Executors.newFixedThreadPool(
+        Math.max(1, Runtime.getRuntime().availableProcessors() - 1), task -> {
+            Thread thread = new Thread(task, "thumbnails");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+
+    private final File directory;
+    private final File indexFile;
+    // the thumbnails, by file name
+    private final Map<String, Entry> entries;
+    private int unsaved;
+    private volatile boolean closed;
+
+    /**
+     * Create the thumbnail index of a folder, with the thumbnails stored
+     * for it before. An index file that cannot be read is ignored.
+     * @param directory The folder.
+     */
+    public ThumbnailIndex(File directory)
+    {
+        this.directory = directory.getAbsoluteFile();
+        String path = this.directory.getPath();
+        indexFile = new File(INDEX_FOLDER, Integer.toHexString(path.hashCode()) + ".idx");
+        entries = new HashMap<>();
+        try {
+            read();
+        }
+        catch(IOException exc) {
+            entries.clear();  // a missing or broken index: start afresh
+        }
+    }
+
+    /**
+     * @return The folder of this index.
+     */
+    public File getDirectory()
+    {
+        return directory;
+    }
+
+    /**
+     * Return the thumbnail of a file, if the index has an up to date one.
+     * This looks at the file and decodes the thumbnail, so it is best not
+     * called on the event thread.
+     * @param file An image file in the folder.
+     * @return The thumbnail, or null if there is none, or the file has
+     *         changed since it was made.
+     */
+    public OFImage getThumbnail(File file)
+    {
+        Entry entry;
+        synchronized(this) {
+            entry = entries.get(file.getName());
+        }
+        if(entry == null || !entry.matches(file)) {
+            return null;
+        }
+        try {
+            BufferedImage image = ImageIO.read(new ByteArrayInputStream(entry.data));
+            return image == null ? null : new OFImage(image);
+        }
+        catch(IOException exc) {
+            return null;
+        }
+    }
+
+    /**
+     * Bring the index up to date with the files of the folder: thumbnails
+     * are made in the background for files that are new or have changed,
+     * and dropped for files that are gone. The files are looked at on the
+     * calling thread, which should therefore not be the event thread.
+     * @param files The image files of the folder.
+     * @param listener Told of each file whose thumbnail has been made, on
+     *                 a background thread.
+     * @return A future that completes when the index is up to date and
+     *         written to disk.
+     */
+    public CompletableFuture<Void> revalidate(List<File> files, Consumer<File> listener)
+    {
+        List<CompletableFuture<Void>> tasks = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        synchronized(this) {
+            for(File file : files) {
+                names.add(file.getName());
+                Entry entry = entries.get(file.getName());
+                if(entry == null || !entry.matches(file)) {
+                    tasks.add(CompletableFuture.runAsync(() -> update(file, listener),
+                                                         generator));
+                }
+            }
+            if(entries.keySet().retainAll(names)) {
+                unsaved++;
+            }
+        }
+        return CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0]))
+                                .thenRun(this::save);
+    }
+
+    /**
+     * Stop making thumbnails for this index. Thumbnails that are being made
+     * are still finished.
+     */
+    public void close()
+    {
+        closed = true;
+    }
+
+    /**
+     * Make a thumbnail of an image file: the image reduced to fit a square
+     * of THUMBNAIL_SIZE pixels. The file is decoded subsampled to at most
+     * twice that size, and then reduced by averaging, which looks smoother
+     * than subsampling all the way. The decode is not counted as a load in
+     * the operation metrics.
+     * @param file The image file.
+     * @return The thumbnail, or null if the file could not be read.
+     */
+    public static OFImage makeThumbnail(File file)
+    {
+        OFImage image = ImageFileManager.decodeImage(file, 2 * THUMBNAIL_SIZE,
+                                                     2 * THUMBNAIL_SIZE);
+        if(image == null) {
+            return null;
+        }
+        int factor = Math.max(image.getWidth(), image.getHeight()) > THUMBNAIL_SIZE ? 2 : 1;
+        return factor > 1 ? PreviewCache.shrink(image, factor) : image;
+    }
+
+    /**
+     * Make the thumbnail of a file and put it into the index.
+     */
+    private void update(File file, Consumer<File> listener)
+    {
+        if(closed) {
+            return;
+        }
+        // take the file's state before decoding, so a change during the
+        // decode makes the entry stale rather than wrong
+        long length = file.length();
+        long modified = file.lastModified();
+        OFImage thumbnail = makeThumbnail(file);
+        byte[] data = new byte[0];
+        if(thumbnail != null) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try {
+                ImageIO.write(thumbnail, "jpg", out);
+                data = out.toByteArray();
+            }
+            catch(IOException exc) {
+                // keep an empty entry, so the file is not tried again
+            }
+        }
+        boolean save;
+        synchronized(this) {
+            entries.put(file.getName(), new Entry(length, modified, data));
+            unsaved++;
+            save = unsaved >= SAVE_EVERY;
+        }
+        listener.accept(file);
+        if(save) {
+            save();
+        }
+    }
+
+    /**
+     * Read the index file.
+     */
+    private void read() throws IOException
+    {
+        try(DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(indexFile)))) {
+            if(in.readInt() != MAGIC || in.readInt() != VERSION
+               || !in.readUTF().equals(directory.getPath())) {
+                return;  // another format, or another folder with the same hash
+            }
+            int count = in.readInt();
+            for(int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                long length = in.readLong();
+                long modified = in.readLong();
+                byte[] data = new byte[in.readInt()];
+                in.readFully(data);
+                entries.put(name, new Entry(length, modified, data));
+            }
+        }
+    }
+
+    /**
+     * Write the index file, if anything has changed. The file is written
+     * under another name first and then renamed, so that a reader never
+     * sees half of it.
+     */
+    private void save()
+    {
+        Map<String, Entry> copy;
+        synchronized(this) {
+            if(unsaved == 0) {
+                return;
+            }
+            unsaved = 0;
+            copy = new HashMap<>(entries);
+        }
+        // indexes of the same folder may be saving at the same time
+        synchronized(ThumbnailIndex.class) {
+            File temp = null;
+            try {
+                INDEX_FOLDER.mkdirs();
+                temp = File.createTempFile("index", ".tmp", INDEX_FOLDER);
+                try(DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(new FileOutputStream(temp)))) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(VERSION);
+                    out.writeUTF(directory.getPath());
+                    out.writeInt(copy.size());
+                    for(Map.Entry<String, Entry> entry : copy.entrySet()) {
+                        Entry thumbnail = entry.getValue();
+                        out.writeUTF(entry.getKey());
+                        out.writeLong(thumbnail.length);
+                        out.writeLong(thumbnail.modified);
+                        out.writeInt(thumbnail.data.length);
+                        out.write(thumbnail.data);
+                    }
+                }
+                Files.move(temp.toPath(), indexFile.toPath(),
+                           StandardCopyOption.REPLACE_EXISTING,
+                           StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch(IOException exc) {
+                // the thumbnails are made again next time
+                if(temp != null) {
+                    temp.delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * An Entry is the thumbnail of one file, as JPEG data, with the length
+     * and modification time the file had when the thumbnail was made.
+     */
+    private static class Entry
+    {
+        private final long length;
+        private final long modified;
+        private final byte[] data;
+
+        Entry(long length, long modified, byte[] data)
+        {
+            this.length = length;
+            this.modified = modified;
+            this.data = data;
+        }
+
+        /**
+         * Return whether the file is still as it was.
+         */
+        boolean matches(File file)
+        {
+            return file.length() == length && file.lastModified() == modified;
+        }
+    }
+}
@@ -0,0 +1,304 @@
+import java.awt.*;
+import java.awt.event.*;
+import javax.swing.*;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * A ThumbnailStrip shows the thumbnails of the images in a folder in a row,
+ * with the current image marked. Clicking a thumbnail selects its file.
+ *
+ * The thumbnails come from the folder's ThumbnailIndex. Only the ones in
+ * view are decoded, in the background, and the most recently shown are kept
+ * decoded. Missing thumbnails are drawn as empty frames until the index has
+ * made them and they have been decoded.
+ *
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+public class ThumbnailStrip extends JComponent
+{
+    private static final long serialVersionUID = 1L;
+
+    private static final int GAP = 4;
+    private static final int CELL_SIZE = ThumbnailIndex.THUMBNAIL_SIZE + 2 * GAP;
+    // the number of decoded thumbnails kept
+    private static final int DECODED_KEPT = 200;
+
+    // the folder shown, and its index once it has been read
+    private File directory;
+    private ThumbnailIndex index;
+    private List<File> files;
+    private File selectedFile;
+    private Consumer<File> listener;
+    // the decoded thumbnails, least recently shown first
+    private Map<File, OFImage> decoded;
+    // the files whose thumbnails are being decoded, and the worker of each
+    private Map<File, SwingWorker<?, ?>> decoding;
+    // the files that had no thumbnail to decode, until the index makes one
+    private Set<File> withoutThumbnail;
+
+    /**
+     * Create an empty thumbnail strip.
+     * @param listener Told of the file whose thumbnail the user clicks.
+     */
+    public ThumbnailStrip(Consumer<File> listener)
+    {
+        this.listener = listener;
+        files = Collections.emptyList();
+        decoded = new LinkedHashMap<File, OFImage>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<File, OFImage> eldest)
+            {
+                return size() > DECODED_KEPT;
+            }
+        };
+        decoding = new HashMap<>();
+        withoutThumbnail = new HashSet<>();
+        setToolTipText("");
+        addMouseListener(new MouseAdapter() {
+            public void mouseClicked(MouseEvent e)
+            {
+                int cell = e.getX() / CELL_SIZE;
+                if(cell < files.size()) {
+                    listener.accept(files.get(cell));
+                }
+            }
+        });
+    }
+
+    /**
+     * Show the thumbnails of a folder. The folder's index is read, and
+     * brought up to date, in the background. Nothing happens if the folder
+     * is already shown.
+     * @param directory The folder.
+     */
+    public void setDirectory(File directory)
+    {
+        File folder = directory.getAbsoluteFile();
+        if(folder.equals(this.directory)) {
+            return;
+        }
+        this.directory = folder;
+        if(index != null) {
+            index.close();
+        }
+        index = null;
+        files = Collections.emptyList();
+        decoded.clear();
+        decoding.clear();
+        withoutThumbnail.clear();
+        revalidate();
+        repaint();
+        new SwingWorker<ThumbnailIndex, Void>() {
+            private List<File> folderFiles;
+
+            protected ThumbnailIndex doInBackground()
+            {
+                folderFiles = ImageFileManager.listImageFiles(folder);
+                ThumbnailIndex folderIndex = new ThumbnailIndex(folder);
+                // looks at every file, so it is done here rather than in done()
+                folderIndex.revalidate(folderFiles, file ->
+                    SwingUtilities.invokeLater(() -> thumbnailMade(folderIndex, file)));
+                return folderIndex;
+            }
+
+            protected void done()
+            {
+                ThumbnailIndex folderIndex;
+                try {
+                    folderIndex = get();
+                }
+                catch(Exception exc) {
+                    return;
+                }
+                if(!folder.equals(directory)) {
+                    folderIndex.close();  // another folder was asked for
+                    return;
+                }
+                index = folderIndex;
+                files = folderFiles;
+                revalidate();
+                repaint();
+                // scroll once the strip has its new size
+                SwingUtilities.invokeLater(() -> scrollToSelected());
+            }
+        }.execute();
+    }
+
+    /**
+     * Mark the file of the current image, and scroll to its thumbnail.
+     * @param file The file, or null to mark none.
+     */
+    public void setSelectedFile(File file)
+    {
+        selectedFile = file == null ? null : file.getAbsoluteFile();
+        scrollToSelected();
+        repaint();
+    }
+
+    /**
+     * Return the size of the strip: one cell per file, in a row.
+     */
+    public Dimension getPreferredSize()
+    {
+        return new Dimension(Math.max(1, files.size()) * CELL_SIZE, CELL_SIZE);
+    }
+
+    /**
+     * Return the name of the file under the mouse.
+     */
+    public String getToolTipText(MouseEvent e)
+    {
+        int cell = e.getX() / CELL_SIZE;
+        return cell < files.size() ? files.get(cell).getName() : null;
+    }
+
+    /**
+     * Paint the thumbnails in the clip area. Thumbnails that have not been
+     * decoded yet are drawn as empty frames, and decoded in the background.
+     */
+    public void paintComponent(Graphics g)
+    {
+        Rectangle clip = g.getClipBounds();
+        if(clip == null) {
+            clip = new Rectangle(getSize());
+        }
+        g.setColor(getBackground() != null ? getBackground() : Color.LIGHT_GRAY);
+        g.fillRect(clip.x, clip.y, clip.width, clip.height);
+        int first = clip.x / CELL_SIZE;
+        int last = Math.min(files.size() - 1, (clip.x + clip.width) / CELL_SIZE);
+        List<File> missing = new ArrayList<>();
+        for(int cell = first; cell <= last; cell++) {
+            File file = files.get(cell);
+            int x = cell * CELL_SIZE;
+            OFImage thumbnail = decoded.get(file);
+            if(thumbnail == null && !decoding.containsKey(file)
+               && !withoutThumbnail.contains(file)) {
+                missing.add(file);
+            }
+            if(thumbnail != null) {
+                g.drawImage(thumbnail, x + (CELL_SIZE - thumbnail.getWidth()) / 2,
+                            (CELL_SIZE - thumbnail.getHeight()) / 2, null);
+            }
+            else {
+                g.setColor(Color.GRAY);
+                g.drawRect(x + GAP, GAP, CELL_SIZE - 2 * GAP - 1, CELL_SIZE - 2 * GAP - 1);
+            }
+            if(file.equals(selectedFile)) {
+                g.setColor(Color.BLUE);
+                g.drawRect(x + 1, 1, CELL_SIZE - 3, CELL_SIZE - 3);
+                g.drawRect(x + 2, 2, CELL_SIZE - 5, CELL_SIZE - 5);
+            }
+        }
+        if(!missing.isEmpty()) {
+            decodeThumbnails(missing);
+        }
+    }
+
+    /**
+     * Decode the thumbnails of some files in the background, and repaint
+     * their cells once they are decoded. Files that have no thumbnail, or
+     * whose thumbnail cannot be decoded, are not tried again until the
+     * index has made a new one.
+     */
+    private void decodeThumbnails(List<File> wanted)
+    {
+        ThumbnailIndex folderIndex = index;
+        if(folderIndex == null) {
+            return;
+        }
+        SwingWorker<Map<File, OFImage>, Void> worker =
+                new SwingWorker<Map<File, OFImage>, Void>() {
+            protected Map<File, OFImage> doInBackground()
+            {
+                Map<File, OFImage> thumbnails = new HashMap<>();
+                for(File file : wanted) {
+                    OFImage thumbnail = folderIndex.getThumbnail(file);
+                    if(thumbnail != null) {
+                        thumbnails.put(file, thumbnail);
+                    }
+                }
+                return thumbnails;
+            }
+
+            protected void done()
+            {
+                if(folderIndex != index) {
+                    return;  // another folder is shown
+                }
+                Map<File, OFImage> thumbnails;
+                try {
+                    thumbnails = get();
+                }
+                catch(Exception exc) {
+                    thumbnails = Collections.emptyMap();
+                }
+                for(File file : wanted) {
+                    // a file the index has made a thumbnail for since is
+                    // no longer this worker's
+                    if(decoding.get(file) != this) {
+                        continue;
+                    }
+                    decoding.remove(file);
+                    OFImage thumbnail = thumbnails.get(file);
+                    if(thumbnail != null) {
+                        decoded.put(file, thumbnail);
+                        repaintCell(file);
+                    }
+                    else {
+                        withoutThumbnail.add(file);
+                    }
+                }
+            }
+        };
+        for(File file : wanted) {
+            decoding.put(file, worker);
+        }
+        worker.execute();
+    }
+
+    /**
+     * Show a thumbnail the index has just made.
+     */
+    private void thumbnailMade(ThumbnailIndex folderIndex, File file)
+    {
+        if(folderIndex != index) {
+            return;
+        }
+        // a decode under way may have missed the new thumbnail
+        decoded.remove(file);
+        decoding.remove(file);
+        withoutThumbnail.remove(file);
+        repaintCell(file);
+    }
+
+    /**
+     * Repaint the cell of a file.
+     */
+    private void repaintCell(File file)
+    {
+        int cell = Collections.binarySearch(files, file);
+        if(cell >= 0) {
+            repaint(cell * CELL_SIZE, 0, CELL_SIZE, CELL_SIZE);
+        }
+    }
+
+    /**
+     * Scroll the strip so that the thumbnail of the selected file is shown.
+     */
+    private void scrollToSelected()
+    {
+        int cell = selectedFile == null ? -1 : Collections.binarySearch(files, selectedFile);
+        if(cell >= 0) {
+            scrollRectToVisible(new Rectangle(cell * CELL_SIZE, 0, CELL_SIZE, CELL_SIZE));
+        }
+    }
+}
@@ -0,0 +1,544 @@
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.io.*;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A TiledImage is an RGB image that does not have to fit into the heap.
+ * The pixels live in a scratch file, which is memory-mapped, so the
+ * operating system pages it in and out as needed. The image is cut into
+ * square tiles, stored one after the other in the file. Tiles in use are
+ * copied into int arrays and kept in a cache of limited size; the least
+ * recently used tile is written back when room is needed. Unless a cache
+ * size is given, all open tiled images share a fraction of the maximum
+ * heap for their caches, in equal parts, so that a second image (the
+ * result of a filter, say) does not double the memory used.
+ *
+ * Pixels are packed 0xRRGGBB ints, as in OFImage. Filters are applied
+ * tile by tile: each tile is filtered together with a border (halo) of
+ * its neighbours as wide as the filter looks, so the result is the same
+ * as filtering the whole image at once. Only filters that can say how far
+ * they look (see Filter.getHalo()) can be applied this way.
+ *
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+public class TiledImage implements Closeable
+{
+    // the default width and height of a tile
+    private static final int DEFAULT_TILE_SIZE = 512;
+    // the part of the maximum heap shared by the caches of all images
+    private static final int CACHE_FRACTION = 8;
+    private static final long SHARED_CACHE_BYTES =
+        Runtime.getRuntime().maxMemory() / CACHE_FRACTION;
+    // the smallest number of tiles a cache holds
+    private static final int MIN_CACHE_TILES = 4;
+    // a mapped segment of the file holds at most this many bytes
+    private static final long SEGMENT_BYTES = 1L << 30;
+    // the number of overview images kept
+    private static final int OVERVIEWS_KEPT = 4;
+
+    private final int width;
+    private final int height;
+    private final int tileSize;
+    private final int tileColumns;
+    private final int tileRows;
+    private final int tilesPerSegment;
+    // the tiles the cache may hold, or 0 if it takes a share
+    private final int cacheTiles;
+
+    private final File file;
+    private final RandomAccessFile access;
+    private final FileChannel channel;
+    private final MappedByteBuffer[] segments;
+    private final LinkedHashMap<Integer, Tile> cache;
+    private final Map<Integer, OFImage> overviews;
+    private boolean closed;
+
+    // the number of open images that share SHARED_CACHE_BYTES
+    private static int sharingImages;
+
+    /**
+     * Create a black tiled image with the default tile size, and a share
+     * of the heap space for caches.
+     * @param width The width of the image.
+     * @param height The height of the image.
+     * @throws IOException if the scratch file could not be made.
+     */
+    public TiledImage(int width, int height) throws IOException
+    {
+        this(width, height, DEFAULT_TILE_SIZE, 0);
+    }
+
+    /**
+     * Create a black tiled image.
+     * @param width The width of the image.
+     * @param height The height of the image.
+     * @param tileSize The width and height of a tile.
+     * @param cacheBytes The heap space to use for cached tiles, or 0 to
+     *                   take a share of the space for all images.
+     * @throws IOException if the scratch file could not be made.
+     */
+    public TiledImage(int width, int height, int tileSize, long cacheBytes) throws IOException
+    {
+        if(width < 1 || height < 1 || tileSize < 1) {
+            throw new IllegalArgumentException("sizes must be positive");
+        }
+        this.width = width;
+        this.height = height;
+        this.tileSize = tileSize;
+        tileColumns = (width + tileSize - 1) / tileSize;
+        tileRows = (height + tileSize - 1) / tileSize;
+        long tileBytes = 4L * tileSize * tileSize;
+        tilesPerSegment = (int) Math.max(1, SEGMENT_BYTES / tileBytes);
+        cacheTiles = cacheBytes <= 0 ? 0
+                                     : (int) Math.max(MIN_CACHE_TILES, cacheBytes / tileBytes);
+
+        int tiles = tileColumns * tileRows;
+        file = File.createTempFile("imageviewer-tiles", ".bin");
+        file.deleteOnExit();
+        access = new RandomAccessFile(file, "rw");
+        access.setLength(tiles * tileBytes);
+        channel = access.getChannel();
+        segments = new MappedByteBuffer[(tiles + tilesPerSegment - 1) / tilesPerSegment];
+        cache = new LinkedHashMap<>(16, 0.75f, true);
+        overviews = new HashMap<>();
+        if(cacheTiles == 0) {
+            synchronized(TiledImage.class) {
+                sharingImages++;
+            }
+        }
+    }
+
+    /**
+     * Load an image file into a tiled image. The file is decoded in bands
+     * of rows, so the whole image is never held in the heap.
+     *
+     * Note that most decoders have to read through the file from the start
+     * for every band, so the bands are made as tall as the cache allows.
+     *
+     * @param imageFile The image file to load.
+     * @return The tiled image, or null if the file could not be read.
+     * @throws IOException if the scratch file could not be made.
+     */
+    public static TiledImage load(File imageFile) throws IOException
+    {
+        Dimension size = ImageFileManager.getImageSize(imageFile);
+        if(size == null) {
+            return null;
+        }
+        TiledImage image = new TiledImage(size.width, size.height);
+        int tileSize = image.getTileSize();
+        long bandPixels = (long) image.getCacheTiles() * tileSize * tileSize;
+        int bandRows = (int) Math.max(tileSize, bandPixels / size.width / tileSize * tileSize);
+        TaskMonitor monitor = TaskMonitor.current();
+        if(monitor != null) {
+            monitor.beginPass((long) size.width * size.height);
+        }
+        for(int y = 0; y < size.height; y += bandRows) {
+            if(monitor != null) {
+                monitor.checkCancelled();
+            }
+            int rows = Math.min(bandRows, size.height - y);
+            OFImage band = ImageFileManager.loadRegion(imageFile,
+                                                       new Rectangle(0, y, size.width, rows), 1);
+            if(band == null) {
+                image.close();
+                return null;
+            }
+            image.setRGB(0, y, size.width, rows, band.getPixelData(), 0, size.width);
+            if(monitor != null) {
+                monitor.worked((long) size.width * rows);
+            }
+        }
+        return image;
+    }
+
+    /**
+     * @return The width of the image.
+     */
+    public int getWidth()
+    {
+        return width;
+    }
+
+    /**
+     * @return The height of the image.
+     */
+    public int getHeight()
+    {
+        return height;
+    }
+
+    /**
+     * @return The width and height of a tile.
+     */
+    public int getTileSize()
+    {
+        return tileSize;
+    }
+
+    /**
+     * Return the color of a pixel.
+     * @param x The x position of the pixel.
+     * @param y The y position of the pixel.
+     * @return The packed RGB value of the pixel.
+     */
+    public synchronized int getRGB(int x, int y)
+    {
+        checkRegion(x, y, 1, 1);
+        Tile tile = getTile(x / tileSize, y / tileSize);
+        return tile.pixels[(y % tileSize) * tileSize + x % tileSize];
+    }
+
+    /**
+     * Read a rectangle of pixels, like BufferedImage.getRGB().
+     * @param x The left edge of the rectangle.
+     * @param y The top edge of the rectangle.
+     * @param w The width of the rectangle.
+     * @param h The height of the rectangle.
+     * @param rgb The array to fill with packed RGB values.
+     * @param offset The index in rgb of the top left pixel.
+     * @param scansize The distance in rgb from one row to the next.
+     */
+    public synchronized void getRGB(int x, int y, int w, int h, int[] rgb, int offset,
+                                    int scansize)
+    {
+        copyRegion(x, y, w, h, rgb, offset, scansize, false);
+    }
+
+    /**
+     * Write a rectangle of pixels, like BufferedImage.setRGB().
+     * @param x The left edge of the rectangle.
+     * @param y The top edge of the rectangle.
+     * @param w The width of the rectangle.
+     * @param h The height of the rectangle.
+     * @param rgb The packed RGB values to write.
+     * @param offset The index in rgb of the top left pixel.
+     * @param scansize The distance in rgb from one row to the next.
+     */
+    public synchronized void setRGB(int x, int y, int w, int h, int[] rgb, int offset,
+                                    int scansize)
+    {
+        copyRegion(x, y, w, h, rgb, offset, scansize, true);
+        overviews.clear();
+    }
+
+    /**
+     * Read a rectangle of pixels into a new OFImage.
+     * @param region The rectangle to read.
+     * @return The pixels of the rectangle.
+     */
+    public OFImage getRegion(Rectangle region)
+    {
+        OFImage image = new OFImage(region.width, region.height);
+        getRGB(region.x, region.y, region.width, region.height, image.getPixelData(), 0,
+               region.width);
+        return image;
+    }
+
+    /**
+     * Return the image reduced by a whole factor, each pixel the average of
+     * a square of factor x factor pixels. The overviews of the last few
+     * factors asked for are kept until the image changes.
+     * @param factor The factor to reduce by.
+     * @return The reduced image.
+     */
+    public OFImage getOverview(int factor)
+    {
+        synchronized(this) {
+            OFImage overview = overviews.get(factor);
+            if(overview != null) {
+                return overview;
+            }
+        }
+        int overviewWidth = (width + factor - 1) / factor;
+        int overviewHeight = (height + factor - 1) / factor;
+        OFImage overview = new OFImage(overviewWidth, overviewHeight);
+        int[] dest = overview.getPixelData();
+        // read bands of whole tile rows, as many rows as the factor divides
+        int bandRows = Math.max(factor, tileSize / factor * factor);
+        for(int y = 0; y < height; y += bandRows) {
+            OFImage band = getRegion(new Rectangle(0, y, width, Math.min(bandRows, height - y)));
+            OFImage shrunk = PreviewCache.shrink(band, factor);
+            System.arraycopy(shrunk.getPixelData(), 0, dest, y / factor * overviewWidth,
+                             shrunk.getWidth() * shrunk.getHeight());
+        }
+        synchronized(this) {
+            if(overviews.size() >= OVERVIEWS_KEPT) {
+                overviews.clear();
+            }
+            overviews.put(factor, overview);
+        }
+        return overview;
+    }
+
+    /**
+     * Apply a filter to this image, tile by tile, and return the result as
+     * a new tiled image. This image is left unchanged.
+     *
+     * Each tile is filtered with a border of the filter's halo around it
+     * (cut off at the edges of the image), so every pixel of the tile sees
+     * the same neighbours as it would in the whole image.
+     *
+     * @param filter The filter to apply.
+     * @return The filtered image.
+     * @throws IllegalArgumentException if the filter needs the whole image.
+     * @throws IOException if the scratch file for the result could not be
+     *         made.
+     */
+    public TiledImage apply(Filter filter) throws IOException
+    {
+        int halo = filter.getHalo();
+        if(halo < 0) {
+            throw new IllegalArgumentException(filter.getName()
+                                               + " cannot be applied tile by tile.");
+        }
+        // the result takes a share of the space if this image does
+        TiledImage result = new TiledImage(width, height, tileSize,
+                                           4L * cacheTiles * tileSize * tileSize);
+        try {
+            TaskMonitor monitor = TaskMonitor.current();
+            if(monitor != null) {
+                monitor.beginPass((long) width * height);
+            }
+            // the filter's own passes over each tile are not reported
+            TaskMonitor quiet = new TaskMonitor(null);
+            for(int row = 0; row < tileRows; row++) {
+                for(int column = 0; column < tileColumns; column++) {
+                    if(monitor != null) {
+                        monitor.checkCancelled();
+                    }
+                    Rectangle tile = new Rectangle(column * tileSize, row * tileSize,
+                                                   Math.min(tileSize, width - column * tileSize),
+                                                   Math.min(tileSize, height - row * tileSize));
+                    Rectangle region = new Rectangle(tile.x - halo, tile.y - halo,
+                                                     tile.width + 2 * halo, tile.height + 2 * halo)
+                                       .intersection(new Rectangle(width, height));
+                    OFImage part = getRegion(region);
+                    quiet.run(() -> {
+                        ImageEvents.applyFilter(filter, part);
+                        return part;
+                    });
+                    int offset = (tile.y - region.y) * region.width + tile.x - region.x;
+                    result.setRGB(tile.x, tile.y, tile.width, tile.height, part.getPixelData(),
+                                  offset, region.width);
+                    if(monitor != null) {
+                        monitor.worked((long) tile.width * tile.height);
+                    }
+                }
+            }
+        }
+        catch(RuntimeException exc) {
+            result.close();
+            throw exc;
+        }
+        return result;
+    }
+
+    /**
+     * Return an overview if it has already been made.
+     * @param factor The factor the image is reduced by.
+     * @return The overview, or null if it has not been made yet.
+     */
+    public synchronized OFImage getCachedOverview(int factor)
+    {
+        return overviews.get(factor);
+    }
+
+    /**
+     * Write all changed tiles to the scratch file.
+     */
+    public synchronized void flush()
+    {
+        for(Map.Entry<Integer, Tile> entry : cache.entrySet()) {
+            writeBack(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Write all changed tiles to the scratch file, and empty the cache. This
+     * is for an image that is kept, but not used for a while; its tiles are
+     * read back when it is used again.
+     */
+    public synchronized void releaseCache()
+    {
+        flush();
+        cache.clear();
+    }
+
+    /**
+     * Release the cache and delete the scratch file. The image must not be
+     * used afterwards.
+     */
+    public synchronized void close()
+    {
+        if(closed) {
+            return;
+        }
+        closed = true;
+        cache.clear();
+        if(cacheTiles == 0) {
+            synchronized(TiledImage.class) {
+                sharingImages--;
+            }
+        }
+        overviews.clear();
+        try {
+            access.close();
+        }
+        catch(IOException exc) {
+            // nothing more can be done; the file goes on exit
+        }
+        file.delete();
+    }
+
+    /**
+     * Copy pixels between a rectangle of the image and an array.
+     */
+    private void copyRegion(int x, int y, int w, int h, int[] rgb, int offset, int scansize,
+                            boolean write)
+    {
+        checkRegion(x, y, w, h);
+        for(int row = y / tileSize; row <= (y + h - 1) / tileSize; row++) {
+            int top = Math.max(y, row * tileSize);
+            int bottom = Math.min(y + h, (row + 1) * tileSize);
+            for(int column = x / tileSize; column <= (x + w - 1) / tileSize; column++) {
+                int left = Math.max(x, column * tileSize);
+                int right = Math.min(x + w, (column + 1) * tileSize);
+                Tile tile = getTile(column, row);
+                for(int py = top; py < bottom; py++) {
+                    int tileIndex = (py - row * tileSize) * tileSize + left - column * tileSize;
+                    int arrayIndex = offset + (py - y) * scansize + left - x;
+                    if(write) {
+                        System.arraycopy(rgb, arrayIndex, tile.pixels, tileIndex, right - left);
+                    }
+                    else {
+                        System.arraycopy(tile.pixels, tileIndex, rgb, arrayIndex, right - left);
+                    }
+                }
+                tile.dirty |= write;
+            }
+        }
+    }
+
+    /**
+     * Return a tile from the cache, reading it from the file if needed,
+     * and making room by writing back the least recently used tile.
+     */
+    private Tile getTile(int column, int row)
+    {
+        if(closed) {
+            throw new IllegalStateException("the image has been closed");
+        }
+        int index = row * tileColumns + column;
+        Tile tile = cache.get(index);
+        if(tile != null) {
+            return tile;
+        }
+        int[] pixels = null;
+        // the share shrinks when other images are opened
+        int limit = getCacheTiles();
+        while(!cache.isEmpty() && cache.size() >= limit) {
+            Iterator<Map.Entry<Integer, Tile>> eldest = cache.entrySet().iterator();
+            Map.Entry<Integer, Tile> entry = eldest.next();
+            writeBack(entry.getKey(), entry.getValue());
+            pixels = entry.getValue().pixels;   // reuse the array
+            eldest.remove();
+        }
+        if(pixels == null) {
+            pixels = new int[tileSize * tileSize];
+        }
+        tileBuffer(index).get(pixels);
+        tile = new Tile(pixels);
+        cache.put(index, tile);
+        return tile;
+    }
+
+    /**
+     * Return the number of tiles the cache may hold at the moment: the
+     * given number, or an equal share of the space for all images.
+     */
+    private int getCacheTiles()
+    {
+        if(cacheTiles > 0) {
+            return cacheTiles;
+        }
+        int sharing;
+        synchronized(TiledImage.class) {
+            sharing = Math.max(1, sharingImages);
+        }
+        long tileBytes = 4L * tileSize * tileSize;
+        return (int) Math.max(MIN_CACHE_TILES, SHARED_CACHE_BYTES / sharing / tileBytes);
+    }
+
+    /**
+     * Write a tile to the file if it has been changed.
+     */
+    private void writeBack(int index, Tile tile)
+    {
+        if(tile.dirty) {
+            tileBuffer(index).put(tile.pixels);
+            tile.dirty = false;
+        }
+    }
+
+    /**
+     * Return a view of the part of the mapped file that holds a tile.
+     */
+    private IntBuffer tileBuffer(int index)
+    {
+        int segmentIndex = index / tilesPerSegment;
+        MappedByteBuffer segment = segments[segmentIndex];
+        int tileInts = tileSize * tileSize;
+        if(segment == null) {
+            long start = (long) segmentIndex * tilesPerSegment * tileInts * 4;
+            long length = Math.min((long) tilesPerSegment * tileInts * 4,
+                                   (long) tileColumns * tileRows * tileInts * 4 - start);
+            try {
+                segment = channel.map(FileChannel.MapMode.READ_WRITE, start, length);
+            }
+            catch(IOException exc) {
+                throw new UncheckedIOException("Could not map the tile file.", exc);
+            }
+            segment.order(ByteOrder.nativeOrder());
+            segments[segmentIndex] = segment;
+        }
+        IntBuffer ints = segment.duplicate().order(ByteOrder.nativeOrder()).asIntBuffer();
+        ints.position((index % tilesPerSegment) * tileInts);
+        ints.limit(ints.position() + tileInts);
+        return ints;
+    }
+
+    /**
+     * Check that a rectangle lies inside the image.
+     */
+    private void checkRegion(int x, int y, int w, int h)
+    {
+        if(x < 0 || y < 0 || w < 1 || h < 1 || x + w > width || y + h > height) {
+            throw new IllegalArgumentException("region " + x + "," + y + " " + w + "x" + h
+                                               + " is not inside the image");
+        }
+    }
+
+    /**
+     * A Tile is a cached copy of one tile of the file.
+     */
+    private static class Tile
+    {
+        private final int[] pixels;
+        private boolean dirty;
+
+        Tile(int[] pixels)
+        {
+            this.pixels = pixels;
+        }
+    }
+}
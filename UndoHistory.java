@@ -0,0 +1,574 @@
+import java.io.*;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * An UndoHistory records the operations made to an image, so that they can
+ * be undone and redone.
+ *
+ * The history is a log of operations rather than a stack of images. An
+ * operation that can be undone exactly, such as a rotation or Invert, is
+ * undone by applying its inverse. Any other operation is undone by taking
+ * an earlier copy of the image (a keyframe) and applying the operations
+ * since then again. Redo simply applies the operation again.
+ *
+ * Keyframes are placed where they pay off: before an operation that cannot
+ * be inverted, a keyframe is taken if there is none yet, or if applying
+ * the operations since the last one again would take longer than reading
+ * a keyframe back is expected to take. Both times are measured as the
+ * history is used.
+ *
+ * If an operation, undo or redo fails or is cancelled part way, the
+ * history is left as it was. The image given to it may have been changed,
+ * so callers that need to keep it should pass a copy.
+ *
+ * Keyframes are kept within a memory budget. The most recent one is kept
+ * as it is; older ones are compressed (losslessly) on a background thread,
+ * and when they still use more memory than the budget, the oldest ones are
+ * written to files in a temporary directory.
+ *
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+public class UndoHistory
+{
+    // the number of most recent keyframes that are never compressed
+    private static final int UNCOMPRESSED_KEYFRAMES = 1;
+    // the first guess at the time it takes to read back a keyframe
+    private static final double INITIAL_RESTORE_NANOS_PER_BYTE = 2.0;
+    // how much a new measurement of the restore time counts
+    private static final double RESTORE_WEIGHT = 0.5;
+
+    private final long memoryBudget;
+    private final List<Entry> entries;
+    private final Deque<ImageOperation> redoOperations;
+    private final ExecutorService worker;
+    private double restoreNanosPerByte;
+    private File spillDirectory;
+
+    /**
+     * Create an undo history that uses a quarter of the maximum heap.
+     */
+    public UndoHistory()
+    {
+        this(Runtime.getRuntime().maxMemory() / 4);
+    }
+
+    /**
+     * Create an undo history with a given memory budget.
+     * @param memoryBudget The number of bytes of heap the keyframes may use.
+     */
+    public UndoHistory(long memoryBudget)
+    {
+        this.memoryBudget = memoryBudget;
+        entries = new ArrayList<>();
+        redoOperations = new ArrayDeque<>();
+        restoreNanosPerByte = INITIAL_RESTORE_NANOS_PER_BYTE;
+        worker = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "undo history");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Apply an operation to an image and record it. This clears the redo
+     * history.
+     * @param operation The operation to apply.
+     * @param image The current image. It may be changed by the operation.
+     * @return The image after the operation.
+     */
+    public OFImage perform(ImageOperation operation, OFImage image)
+    {
+        OFImage result = record(operation, image);
+        synchronized(this) {
+            redoOperations.clear();
+        }
+        return result;
+    }
+
+    /**
+     * Return whether there is an operation to undo.
+     * @return true if undo() can be called.
+     */
+    public synchronized boolean canUndo()
+    {
+        return !entries.isEmpty();
+    }
+
+    /**
+     * Return whether there is an undone operation to redo.
+     * @return true if redo() can be called.
+     */
+    public synchronized boolean canRedo()
+    {
+        return !redoOperations.isEmpty();
+    }
+
+    /**
+     * Undo the latest operation. The work is done without holding the
+     * history's lock, so that the history can be asked about while it goes
+     * on.
+     * @param current The current image. It may be changed.
+     * @return The image as it was before the latest operation.
+     * @throws UncheckedIOException if a keyframe could not be read back
+     *         from its temporary file.
+     */
+    public OFImage undo(OFImage current)
+    {
+        Entry entry;
+        Snapshot keyframe = null;
+        boolean copy = false;
+        List<ImageOperation> replay = new ArrayList<>();
+        synchronized(this) {
+            if(entries.isEmpty()) {
+                throw new IllegalStateException("nothing to undo");
+            }
+            int index = entries.size() - 1;
+            entry = entries.get(index);
+            if(entry.inverse == null) {
+                int first = index;
+                while(entries.get(first).keyframe == null) {
+                    first--;
+                }
+                keyframe = entries.get(first).keyframe;
+                // the keyframe at the index itself is about to be dropped,
+                // so its image can be used as it is
+                copy = first < index;
+                for(int i = first; i < index; i++) {
+                    replay.add(entries.get(i).operation);
+                }
+            }
+        }
+        OFImage image = entry.inverse != null ? entry.inverse.apply(current)
+                                              : rebuild(keyframe, copy, replay);
+        synchronized(this) {
+            // the history may have been cleared in the meantime
+            if(!entries.isEmpty() && entries.get(entries.size() - 1) == entry) {
+                entries.remove(entries.size() - 1);
+                if(entry.keyframe != null) {
+                    entry.keyframe.discard();
+                }
+                redoOperations.addLast(entry.operation);
+            }
+        }
+        scheduleHousekeeping();
+        return image;
+    }
+
+    /**
+     * Redo the latest undone operation.
+     * @param current The current image. It may be changed.
+     * @return The image after the operation.
+     */
+    public OFImage redo(OFImage current)
+    {
+        ImageOperation operation;
+        synchronized(this) {
+            operation = redoOperations.peekLast();
+        }
+        if(operation == null) {
+            throw new IllegalStateException("nothing to redo");
+        }
+        OFImage result = record(operation, current);
+        synchronized(this) {
+            redoOperations.pollLast();
+        }
+        return result;
+    }
+
+    /**
+     * Forget all operations.
+     */
+    public synchronized void clear()
+    {
+        for(Entry entry : entries) {
+            if(entry.keyframe != null) {
+                entry.keyframe.discard();
+            }
+        }
+        entries.clear();
+        redoOperations.clear();
+    }
+
+    /**
+     * Return the number of keyframes the history holds at the moment.
+     * @return The number of keyframes.
+     */
+    public synchronized int getKeyframeCount()
+    {
+        return keyframes().size();
+    }
+
+    /**
+     * Return the number of bytes of heap that the keyframes use at the
+     * moment. Keyframes in temporary files do not count.
+     * @return The memory in use.
+     */
+    public synchronized long getMemoryUsed()
+    {
+        long total = 0;
+        for(Snapshot keyframe : keyframes()) {
+            total += keyframe.getMemoryUsed();
+        }
+        return total;
+    }
+
+    /**
+     * Return the memory budget of this history.
+     * @return The number of bytes of heap the keyframes may use.
+     */
+    public long getMemoryBudget()
+    {
+        return memoryBudget;
+    }
+
+    /**
+     * Apply an operation, taking a keyframe first if it is needed, and add
+     * it to the log.
+     */
+    private OFImage record(ImageOperation operation, OFImage image)
+    {
+        ImageOperation inverse = operation.getInverse();
+        Snapshot keyframe = null;
+        if(inverse == null && needsKeyframe(image)) {
+            keyframe = new Snapshot(new OFImage(image));
+        }
+        long start = System.nanoTime();
+        OFImage result = operation.apply(image);
+        long nanos = System.nanoTime() - start;
+        synchronized(this) {
+            entries.add(new Entry(operation, inverse, nanos, keyframe));
+        }
+        scheduleHousekeeping();
+        return result;
+    }
+
+    /**
+     * Decide whether a keyframe of the current image should be taken before
+     * an operation that cannot be inverted.
+     */
+    private synchronized boolean needsKeyframe(OFImage image)
+    {
+        long replayNanos = 0;
+        for(int i = entries.size() - 1; i >= 0; i--) {
+            Entry entry = entries.get(i);
+            replayNanos += entry.nanos;
+            if(entry.keyframe != null) {
+                double restoreNanos = 4.0 * image.getWidth() * image.getHeight()
+                                      * restoreNanosPerByte;
+                return replayNanos > restoreNanos;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Rebuild an image from a keyframe, by applying the operations logged
+     * after it again.
+     * @param copy true if the keyframe stays in use, so its image must not
+     *        be changed.
+     */
+    private OFImage rebuild(Snapshot keyframe, boolean copy, List<ImageOperation> operations)
+    {
+        // only reading back a compressed keyframe says what older ones cost
+        boolean measure = !keyframe.isRaw();
+        long start = System.nanoTime();
+        OFImage image;
+        try {
+            image = keyframe.restore(copy);
+        }
+        catch(IOException exc) {
+            throw new UncheckedIOException("Could not read the undo keyframe back.", exc);
+        }
+        long nanos = System.nanoTime() - start;
+        long bytes = 4L * image.getWidth() * image.getHeight();
+        if(measure) {
+            synchronized(this) {
+                restoreNanosPerByte = (1 - RESTORE_WEIGHT) * restoreNanosPerByte
+                                      + RESTORE_WEIGHT * nanos / bytes;
+            }
+        }
+        for(ImageOperation operation : operations) {
+            image = operation.apply(image);
+        }
+        return image;
+    }
+
+    /**
+     * Compress keyframes in the background, and keep within the budget.
+     */
+    private void scheduleHousekeeping()
+    {
+        worker.execute(this::housekeeping);
+    }
+
+    /**
+     * Compress all but the most recent keyframes, and spill the oldest ones
+     * to disk while the budget is exceeded. Runs on the worker thread.
+     */
+    private void housekeeping()
+    {
+        List<Snapshot> keyframes;
+        synchronized(this) {
+            keyframes = keyframes();
+        }
+        // the list runs from the most recent keyframe backwards
+        for(int i = UNCOMPRESSED_KEYFRAMES; i < keyframes.size(); i++) {
+            keyframes.get(i).compress();
+        }
+        for(int i = keyframes.size() - 1; i >= 0 && getMemoryUsed() > memoryBudget; i--) {
+            Snapshot keyframe = keyframes.get(i);
+            keyframe.compress();
+            try {
+                keyframe.spill(getSpillDirectory());
+            }
+            catch(IOException exc) {
+                // no room on disk: keep it in memory, compressed
+            }
+        }
+    }
+
+    /**
+     * Return all keyframes, the most recent first.
+     */
+    private List<Snapshot> keyframes()
+    {
+        List<Snapshot> keyframes = new ArrayList<>();
+        for(int i = entries.size() - 1; i >= 0; i--) {
+            Snapshot keyframe = entries.get(i).keyframe;
+            if(keyframe != null) {
+                keyframes.add(keyframe);
+            }
+        }
+        return keyframes;
+    }
+
+    /**
+     * Return the directory for spilled keyframes, creating it if needed.
+     */
+    private synchronized File getSpillDirectory() throws IOException
+    {
+        if(spillDirectory == null) {
+            spillDirectory = Files.createTempDirectory("imageviewer-undo").toFile();
+            spillDirectory.deleteOnExit();
+        }
+        return spillDirectory;
+    }
+
+    /**
+     * Compress an image losslessly. Each channel value is stored as the
+     * difference to the same channel of the pixel on its left, which turns
+     * smooth areas into runs of small numbers that deflate well.
+     */
+    private static byte[] compress(OFImage image)
+    {
+        int width = image.getWidth();
+        int[] pixels = image.getPixelData();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        byte[] row = new byte[3 * width];
+        try(OutputStream out = new DeflaterOutputStream(bytes, deflater, 1 << 16)) {
+            for(int offset = 0; offset < pixels.length; offset += width) {
+                int previous = 0;
+                for(int x = 0; x < width; x++) {
+                    int rgb = pixels[offset + x];
+                    row[3 * x] = (byte) ((rgb >> 16) - (previous >> 16));
+                    row[3 * x + 1] = (byte) ((rgb >> 8) - (previous >> 8));
+                    row[3 * x + 2] = (byte) (rgb - previous);
+                    previous = rgb;
+                }
+                out.write(row);
+            }
+        }
+        catch(IOException exc) {
+            // cannot happen when writing to memory
+            throw new UncheckedIOException(exc);
+        }
+        finally {
+            deflater.end();
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Rebuild an image from the result of compress().
+     */
+    private static OFImage decompress(byte[] data, int width, int height) throws IOException
+    {
+        OFImage image = new OFImage(width, height);
+        int[] pixels = image.getPixelData();
+        byte[] row = new byte[3 * width];
+        try(DataInputStream in = new DataInputStream(
+                new InflaterInputStream(new ByteArrayInputStream(data), new Inflater(), 1 << 16))) {
+            for(int offset = 0; offset < pixels.length; offset += width) {
+                in.readFully(row);
+                int red = 0;
+                int green = 0;
+                int blue = 0;
+                for(int x = 0; x < width; x++) {
+                    red = (red + row[3 * x]) & 0xff;
+                    green = (green + row[3 * x + 1]) & 0xff;
+                    blue = (blue + row[3 * x + 2]) & 0xff;
+                    pixels[offset + x] = OFImage.packRGB(red, green, blue);
+                }
+            }
+        }
+        return image;
+    }
+
+    /**
+     * An Entry is one operation in the log.
+     */
+    private static class Entry
+    {
+        private final ImageOperation operation;
+        // the exact inverse of the operation, or null
+        private final ImageOperation inverse;
+        // the time the operation took
+        private final long nanos;
+        // the image before the operation, or null
+        private final Snapshot keyframe;
+
+        Entry(ImageOperation operation, ImageOperation inverse, long nanos, Snapshot keyframe)
+        {
+            this.operation = operation;
+            this.inverse = inverse;
+            this.nanos = nanos;
+            this.keyframe = keyframe;
+        }
+    }
+
+    /**
+     * A Snapshot holds one version of an image: as the image itself, as
+     * compressed bytes, or as a file holding the compressed bytes.
+     */
+    private static class Snapshot
+    {
+        private final int width;
+        private final int height;
+        private OFImage image;
+        private byte[] compressed;
+        private File file;
+
+        Snapshot(OFImage image)
+        {
+            this.image = image;
+            width = image.getWidth();
+            height = image.getHeight();
+        }
+
+        /**
+         * Return the number of bytes of heap this snapshot uses.
+         */
+        synchronized long getMemoryUsed()
+        {
+            if(image != null) {
+                return 4L * width * height;
+            }
+            return compressed != null ? compressed.length : 0;
+        }
+
+        /**
+         * Return whether this snapshot still holds the image itself.
+         */
+        synchronized boolean isRaw()
+        {
+            return image != null;
+        }
+
+        /**
+         * Compress the image, if that has not happened yet. The work is
+         * done without holding the lock, so restore() is never kept waiting.
+         */
+        void compress()
+        {
+            OFImage original;
+            synchronized(this) {
+                original = image;
+            }
+            if(original == null) {
+                return;
+            }
+            byte[] bytes = UndoHistory.compress(original);
+            synchronized(this) {
+                if(image == original) {
+                    compressed = bytes;
+                    image = null;
+                }
+            }
+        }
+
+        /**
+         * Move the compressed bytes into a file.
+         */
+        synchronized void spill(File directory) throws IOException
+        {
+            if(compressed == null) {
+                return;
+            }
+            File spillFile = File.createTempFile("snapshot", ".bin", directory);
+            spillFile.deleteOnExit();
+            try(OutputStream out = new BufferedOutputStream(new FileOutputStream(spillFile))) {
+                out.write(compressed);
+            }
+            catch(IOException exc) {
+                spillFile.delete();
+                throw exc;
+            }
+            file = spillFile;
+            compressed = null;
+        }
+
+        /**
+         * Return the image held by this snapshot. The image is copied, read
+         * and decompressed without holding the lock, so that the memory
+         * used can still be asked for meanwhile.
+         * @param copy true if the result may be changed while the snapshot
+         *        is still in use.
+         */
+        OFImage restore(boolean copy) throws IOException
+        {
+            OFImage original;
+            byte[] bytes;
+            File spillFile;
+            synchronized(this) {
+                original = image;
+                bytes = compressed;
+                spillFile = file;
+            }
+            if(original != null) {
+                return copy ? new OFImage(original) : original;
+            }
+            if(bytes == null && spillFile == null) {
+                throw new IOException("The keyframe has been discarded.");
+            }
+            if(bytes == null) {
+                bytes = Files.readAllBytes(spillFile.toPath());
+            }
+            return UndoHistory.decompress(bytes, width, height);
+        }
+
+        /**
+         * Release everything this snapshot holds.
+         */
+        synchronized void discard()
+        {
+            image = null;
+            compressed = null;
+            if(file != null) {
+                file.delete();
+                file = null;
+            }
+        }
+    }
+}
@@ -1,5 +1,3 @@
-import java.awt.Color;
-
 /**
  * Class WarholFlippedChannel creates 4 quarter sized images of the original in the format:
  * Original                          / Red Channel Mirrored Horizontally
@@ -8,10 +6,8 @@ import java.awt.Color;
  * @author Erik Cooke
  * @version 2019.11.18
  */
-public class WarholFlippedChannel extends Filter
+public class WarholFlippedChannel extends StripFilter
 {
-    private OFImage original;
-    
     /**
      * Constructor for objects of class WarholFlippedChannel
      * @param name Name of this filter
@@ -22,29 +18,49 @@ public class WarholFlippedChannel extends Filter
     }
 
     /**
-     * Apply this filter to an image.
+     * Apply this filter to a range of rows of the quarter sized copies.
      *
-     * @param  image The image to apply the filter to.
+     * @param  source    The pixels to read from.
+     * @param  dest      The pixels to write to.
+     * @param  width     The width of the image.
+     * @param  height    The height of the image.
+     * @param  startRow  The first row of the copies to fill.
+     * @param  endRow    The row after the last row of the copies to fill.
      */
-    public void apply(OFImage image)
+    protected void filterRows(int[] source, int[] dest, int width, int height,
+                              int startRow, int endRow)
     {
-        original = new OFImage(image);
-        int width = original.getWidth();
-        int height = original.getHeight();        
-        for(int y = 0; y < height / 2; y++)
+        for(int y = startRow; y < endRow; y++)
         {
             for(int x = 0; x < width / 2; x++)
             {
-                Color pix = original.getPixel(x * 2, y * 2);
+                int pix = source[(y * 2) * width + x * 2];
+                int red = OFImage.red(pix);
+                int green = OFImage.green(pix);
+                int blue = OFImage.blue(pix);
                 // Copies original image at quarter size
-                image.setPixel(x, y, original.getPixel(x * 2, y * 2));
+                dest[y * width + x] = pix;
                 // Copies original image at quarter size, Red Channel, flipped horizontally
-                image.setPixel(width - x - 1, y, new Color(pix.getRed(), pix.getRed(), pix.getRed()));
+                dest[y * width + width - x - 1] = OFImage.packRGB(red, red, red);
                 // Copies original image at quarter size, Green Channel, flipped vertically
-                image.setPixel(x, height - y - 1, new Color(pix.getGreen(), pix.getGreen(), pix.getGreen()));
+                dest[(height - y - 1) * width + x] = OFImage.packRGB(green, green, green);
                 // Copies original image at quarter size, Blue Channel, flipped horizontally & vertically
-                image.setPixel(width - x - 1, height - y - 1, new Color(pix.getBlue(), pix.getBlue(), pix.getBlue()));
+                dest[(height - y - 1) * width + width - x - 1] = OFImage.packRGB(blue, blue, blue);
             }
         }
     }
+
+    /**
+     * Each row of the quarter sized copies is written into all four
+     * quarters at once, so the work is split into half as many rows 
+     * as the image has.
+     *
+     * @param  width   The width of the image.
+     * @param  height  The height of the image.
+     * @return The number of rows in a quarter sized copy.
+     */
+    protected int getRowCount(int width, int height)
+    {
+        return height / 2;
+    }
 }
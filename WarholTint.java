@@ -1,5 +1,3 @@
-import java.awt.Color;
-
 /**
  * Class WarholTint creates 4 quarter sized images of the original in the format:
  * Original      / Red Tint
@@ -8,10 +6,8 @@ import java.awt.Color;
  * @author Erik Cooke
  * @version 2019.11.18
  */
-public class WarholTint extends Filter
+public class WarholTint extends StripFilter
 {
-    private OFImage original;
-    
     /**
      * Constructor for objects of class WarholTint
      * @param name Name of this filter
@@ -22,29 +18,46 @@ public class WarholTint extends Filter
     }
 
     /**
-     * Apply this filter to an image.
+     * Apply this filter to a range of rows of the quarter sized copies.
      *
-     * @param  image The image to apply the filter to.
+     * @param  source    The pixels to read from.
+     * @param  dest      The pixels to write to.
+     * @param  width     The width of the image.
+     * @param  height    The height of the image.
+     * @param  startRow  The first row of the copies to fill.
+     * @param  endRow    The row after the last row of the copies to fill.
      */
-    public void apply(OFImage image)
+    protected void filterRows(int[] source, int[] dest, int width, int height,
+                              int startRow, int endRow)
     {
-        original = new OFImage(image);
-        int width = original.getWidth();
-        int height = original.getHeight();        
-        for(int y = 0; y < height / 2; y++)
+        for(int y = startRow; y < endRow; y++)
         {
             for(int x = 0; x < width / 2; x++)
             {
-                Color pix = original.getPixel(x * 2, y * 2);
-                image.setPixel(x, y, original.getPixel(x * 2, y * 2));
+                int pix = source[(y * 2) * width + x * 2];
                 // Copies original image at quarter size
-                image.setPixel(x + (width / 2), y, new Color(pix.getRed(), 0, 0));
+                dest[y * width + x] = pix;
                 // Copies original image at quarter size using red tint
-                image.setPixel(x, y + (height / 2), new Color(0, pix.getGreen(), 0));
+                dest[y * width + x + (width / 2)] = pix & 0xff0000;
                 // Copies original image at quarter size using green tint
-                image.setPixel(x + (width / 2), y + (height / 2), new Color(0, 0, pix.getBlue()));
+                dest[(y + (height / 2)) * width + x] = pix & 0x00ff00;
                 // Copies original image at quarter size using blue tint
+                dest[(y + (height / 2)) * width + x + (width / 2)] = pix & 0x0000ff;
             }
         }
     }
+
+    /**
+     * Each row of the quarter sized copies is written into all four
+     * quarters at once, so the work is split into half as many rows 
+     * as the image has.
+     *
+     * @param  width   The width of the image.
+     * @param  height  The height of the image.
+     * @return The number of rows in a quarter sized copy.
+     */
+    protected int getRowCount(int width, int height)
+    {
+        return height / 2;
+    }
 }
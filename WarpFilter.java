@@ -0,0 +1,221 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A WarpFilter moves the pixels of an image around: each pixel of the
+ * result takes its color from a position in the source image, given by a
+ * WarpMap. Subclasses only say how to make the map for an image size.
+ *
+ * Working out a map usually takes trigonometry for every row and column
+ * (or every pixel), so the maps of the last few image sizes are kept. A
+ * filter's parameters must therefore not change once it has been created;
+ * a filter with other parameters is another filter object, with its own
+ * maps.
+ *
+ * Positions between pixels are sampled either from the nearest pixel, or
+ * by bilinear interpolation of the four around it, in fixed point. A
+ * position outside the image takes the color of the nearest edge pixel.
+ * The rows of the result are worked out in parallel, by the default
+ * FilterEngine.
+ *
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+public abstract class WarpFilter extends Filter
+{
+    // the number of image sizes whose maps are kept
+    private static final int CACHED_MAPS = 4;
+    private static final int FRACTION_BITS = WarpMap.FRACTION_BITS;
+    private static final int FRACTION_MASK = (1 << FRACTION_BITS) - 1;
+    private static final int ONE = 1 << FRACTION_BITS;
+
+    /**
+     * The ways of sampling positions between pixels.
+     */
+    public enum Interpolation
+    {
+        NEAREST,
+        BILINEAR
+    }
+
+    private final Interpolation interpolation;
+    // the maps made so far, by image size, the least recently used first
+    private final Map<Long, WarpMap> maps;
+
+    /**
+     * Create a warp filter.
+     * @param name The name of the filter.
+     * @param interpolation How positions between pixels are sampled.
+     */
+    public WarpFilter(String name, Interpolation interpolation)
+    {
+        super(name);
+        this.interpolation = interpolation;
+        maps = new LinkedHashMap<>(CACHED_MAPS * 2, 0.75f, true);
+    }
+
+    /**
+     * Return how this filter samples positions between pixels.
+     * @return The interpolation.
+     */
+    public Interpolation getInterpolation()
+    {
+        return interpolation;
+    }
+
+    /**
+     * Make the map of this warp for an image size.
+     * @param width The width of the image.
+     * @param height The height of the image.
+     * @return The map.
+     */
+    protected abstract WarpMap createMap(int width, int height);
+
+    /**
+     * Apply this filter to an image.
+     *
+     * @param  image  The image to be changed by this filter.
+     */
+    public void apply(OFImage image)
+    {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        WarpMap map = getMap(width, height);
+        int[] dest = image.getPixelData();
+        int[] source = dest.clone();
+        if(map.isSeparable()) {
+            applySeparable(map, source, dest, width, height);
+            return;
+        }
+        int[] xs = map.getSourceX();
+        int[] ys = map.getSourceY();
+        boolean bilinear = interpolation == Interpolation.BILINEAR;
+        FilterEngine.getDefault().forEachStrip(height, width, (startRow, endRow) -> {
+            for(int i = startRow * width; i < endRow * width; i++) {
+                dest[i] = bilinear ? sampleBilinear(source, width, height, xs[i], ys[i])
+                                   : sampleNearest(source, width, height, xs[i], ys[i]);
+            }
+        });
+    }
+
+    /**
+     * Apply a separable map. The neighbours and weights of each column are
+     * the same on every row, and those of each row the same along it, so
+     * they are worked out once, and the rows only blend pixels.
+     */
+    private void applySeparable(WarpMap map, int[] source, int[] dest, int width, int height)
+    {
+        int[] xs = map.getSourceX();
+        int[] ys = map.getSourceY();
+        boolean bilinear = interpolation == Interpolation.BILINEAR;
+        int[] left = new int[width];
+        int[] right = new int[width];
+        int[] fractionX = new int[width];
+        for(int x = 0; x < width; x++) {
+            if(bilinear) {
+                left[x] = clamp(xs[x] >> FRACTION_BITS, width);
+                right[x] = clamp((xs[x] >> FRACTION_BITS) + 1, width);
+                fractionX[x] = xs[x] & FRACTION_MASK;
+            }
+            else {
+                left[x] = clamp((xs[x] + ONE / 2) >> FRACTION_BITS, width);
+            }
+        }
+        FilterEngine.getDefault().forEachStrip(height, width, (startRow, endRow) -> {
+            for(int y = startRow; y < endRow; y++) {
+                int row = y * width;
+                if(!bilinear) {
+                    int sourceRow = clamp((ys[y] + ONE / 2) >> FRACTION_BITS, height) * width;
+                    for(int x = 0; x < width; x++) {
+                        dest[row + x] = source[sourceRow + left[x]];
+                    }
+                    continue;
+                }
+                int top = clamp(ys[y] >> FRACTION_BITS, height) * width;
+                int bottom = clamp((ys[y] >> FRACTION_BITS) + 1, height) * width;
+                int fy = ys[y] & FRACTION_MASK;
+                for(int x = 0; x < width; x++) {
+                    int fx = fractionX[x];
+                    int upper = blend(source[top + left[x]], source[top + right[x]], fx);
+                    int lower = blend(source[bottom + left[x]], source[bottom + right[x]], fx);
+                    dest[row + x] = blend(upper, lower, fy);
+                }
+            }
+        });
+    }
+
+    /**
+     * Return the map for an image size, from the cache if it was made
+     * before.
+     */
+    private WarpMap getMap(int width, int height)
+    {
+        Long key = ((long) width << 32) | height;
+        synchronized(maps) {
+            WarpMap map = maps.get(key);
+            if(map != null) {
+                return map;
+            }
+        }
+        // made outside the lock; two threads may both make it, which is
+        // harmless since the maps are the same
+        WarpMap map = createMap(width, height);
+        synchronized(maps) {
+            maps.put(key, map);
+            if(maps.size() > CACHED_MAPS) {
+                maps.remove(maps.keySet().iterator().next());
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Return the pixel nearest to a fixed point position, or the nearest
+     * edge pixel if the position is outside the image.
+     */
+    private static int sampleNearest(int[] source, int width, int height, int sx, int sy)
+    {
+        int x = clamp((sx + ONE / 2) >> FRACTION_BITS, width);
+        int y = clamp((sy + ONE / 2) >> FRACTION_BITS, height);
+        return source[y * width + x];
+    }
+
+    /**
+     * Return the color at a fixed point position, interpolated from the
+     * four pixels around it. Pixels outside the image count as the
+     * nearest edge pixel.
+     */
+    private static int sampleBilinear(int[] source, int width, int height, int sx, int sy)
+    {
+        int left = clamp(sx >> FRACTION_BITS, width);
+        int right = clamp((sx >> FRACTION_BITS) + 1, width);
+        int top = clamp(sy >> FRACTION_BITS, height) * width;
+        int bottom = clamp((sy >> FRACTION_BITS) + 1, height) * width;
+        int fx = sx & FRACTION_MASK;
+        return blend(blend(source[top + left], source[top + right], fx),
+                     blend(source[bottom + left], source[bottom + right], fx),
+                     sy & FRACTION_MASK);
+    }
+
+    /**
+     * Blend two pixels: a fraction (out of ONE) of the second, and the rest
+     * of the first. Red and blue are blended together, in the same int,
+     * since there are 8 free bits above each of them.
+     */
+    private static int blend(int first, int second, int fraction)
+    {
+        int rest = ONE - fraction;
+        int redBlue = ((first & 0xff00ff) * rest + (second & 0xff00ff) * fraction)
+                      >>> FRACTION_BITS;
+        int green = ((first & 0xff00) * rest + (second & 0xff00) * fraction) >>> FRACTION_BITS;
+        return (redBlue & 0xff00ff) | (green & 0xff00);
+    }
+
+    /**
+     * Keep a position inside the image.
+     */
+    private static int clamp(int position, int size)
+    {
+        return position < 0 ? 0 : position >= size ? size - 1 : position;
+    }
+}
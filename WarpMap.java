@@ -0,0 +1,152 @@
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * A WarpMap says, for every pixel of a warped image, where in the source
+ * image its color is taken from. The positions are fixed point numbers
+ * with FRACTION_BITS bits after the point, in source pixels, with pixel
+ * (0, 0) at position (0, 0).
+ *
+ * Many warps move columns and rows independently: the source x depends
+ * only on x, and the source y only on y. Their maps are separable, and
+ * only hold one position per column and one per row; other maps hold a
+ * position for every pixel.
+ *
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+public class WarpMap
+{
+    // the number of bits of fraction in the positions
+    public static final int FRACTION_BITS = 8;
+    private static final double FIXED_ONE = 1 << FRACTION_BITS;
+
+    private final int width;
+    private final int height;
+    private final boolean separable;
+    private final int[] sourceX;
+    private final int[] sourceY;
+
+    /**
+     * Create a map from positions already worked out.
+     */
+    private WarpMap(int width, int height, boolean separable, int[] sourceX, int[] sourceY)
+    {
+        this.width = width;
+        this.height = height;
+        this.separable = separable;
+        this.sourceX = sourceX;
+        this.sourceY = sourceY;
+    }
+
+    /**
+     * Make a separable map.
+     * @param width The width of the image.
+     * @param height The height of the image.
+     * @param sourceX Gives the source x of each column x.
+     * @param sourceY Gives the source y of each row y.
+     * @return The map.
+     */
+    public static WarpMap separable(int width, int height, DoubleUnaryOperator sourceX,
+                                    DoubleUnaryOperator sourceY)
+    {
+        int[] xs = new int[width];
+        for(int x = 0; x < width; x++) {
+            xs[x] = toFixed(sourceX.applyAsDouble(x));
+        }
+        int[] ys = new int[height];
+        for(int y = 0; y < height; y++) {
+            ys[y] = toFixed(sourceY.applyAsDouble(y));
+        }
+        return new WarpMap(width, height, true, xs, ys);
+    }
+
+    /**
+     * Make a map with a position for every pixel.
+     * @param width The width of the image.
+     * @param height The height of the image.
+     * @param sourceX Gives the source x of the pixel (x, y).
+     * @param sourceY Gives the source y of the pixel (x, y).
+     * @return The map.
+     */
+    public static WarpMap create(int width, int height, DoubleBinaryOperator sourceX,
+                                 DoubleBinaryOperator sourceY)
+    {
+        int[] xs = new int[width * height];
+        int[] ys = new int[width * height];
+        FilterEngine.getDefault().forEachStrip(height, width, (startRow, endRow) -> {
+            for(int y = startRow; y < endRow; y++) {
+                for(int x = 0; x < width; x++) {
+                    xs[y * width + x] = toFixed(sourceX.applyAsDouble(x, y));
+                    ys[y * width + x] = toFixed(sourceY.applyAsDouble(x, y));
+                }
+            }
+        });
+        return new WarpMap(width, height, false, xs, ys);
+    }
+
+    /**
+     * @return The width of the image this map is for.
+     */
+    public int getWidth()
+    {
+        return width;
+    }
+
+    /**
+     * @return The height of the image this map is for.
+     */
+    public int getHeight()
+    {
+        return height;
+    }
+
+    /**
+     * @return true if the map holds one position per column and per row.
+     */
+    public boolean isSeparable()
+    {
+        return separable;
+    }
+
+    /**
+     * Return the source x positions: one per column if the map is
+     * separable, otherwise one per pixel, row by row. The array is not a
+     * copy, and must not be changed.
+     * @return The positions, in fixed point.
+     */
+    int[] getSourceX()
+    {
+        return sourceX;
+    }
+
+    /**
+     * Return the source y positions: one per row if the map is separable,
+     * otherwise one per pixel, row by row. The array is not a copy, and
+     * must not be changed.
+     * @return The positions, in fixed point.
+     */
+    int[] getSourceY()
+    {
+        return sourceY;
+    }
+
+    /**
+     * Return the bytes of memory this map uses.
+     * @return The size of its arrays.
+     */
+    public long getMemorySize()
+    {
+        return 4L * (sourceX.length + sourceY.length);
+    }
+
+    /**
+     * Turn a position into fixed point, keeping it within a range that
+     * cannot overflow (far outside any image, where it is clamped anyway).
+     */
+    private static int toFixed(double position)
+    {
+        double limited = Math.max(-1e6, Math.min(1e6, position));
+        return (int) Math.round(limited * FIXED_ONE);
+    }
+}